@@ -0,0 +1,175 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge;
+
+import net.reallifegames.glm.module.SqlModule;
+import org.spongepowered.api.scheduler.Task;
+
+import javax.annotation.Nonnull;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the banned web map hosts in memory so connections from them can be rejected during the WebSocket handshake
+ * without a trip to the sql server. The index is loaded from the bans table once the server has started and reloaded
+ * periodically. New bans are added to the index right away and written to the sql server by an async task.
+ *
+ * @author Tyler Bucher
+ */
+public final class BanIndex {
+
+    /**
+     * The name of the bans table created by {@link SqlModule#createBansTable(Connection)}, without the table prefix.
+     */
+    @Nonnull
+    private static final String BANS_TABLE = "bans";
+
+    /**
+     * The column of the bans table which holds the banned host address.
+     */
+    @Nonnull
+    private static final String HOST_COLUMN = "ip";
+
+    /**
+     * The banned host addresses.
+     */
+    @Nonnull
+    private static final Set<String> bannedHosts = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The hosts which were banned by this server but were not seen in the sql server yet.
+     */
+    @Nonnull
+    private static final Set<String> pendingBans = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The instance of the {@link GlMap} plugin.
+     */
+    private static GlMap pluginInstance;
+
+    /**
+     * The sponge task which reloads the bans.
+     */
+    private static Task reloadTask;
+
+    /**
+     * Initializes this class. Loads the existing bans off the main thread and reloads them periodically if enabled.
+     *
+     * @param pluginInstance the instance of {@link GlMap}.
+     */
+    public static void init(@Nonnull final GlMap pluginInstance) {
+        BanIndex.pluginInstance = pluginInstance;
+        final long reloadInterval = pluginInstance.getConfig().getBanReloadInterval();
+        // Load once if reloads are disabled
+        if (reloadInterval <= 0) {
+            Task.builder().async().execute(BanIndex::load).name("GlM Ban Load Task").submit(pluginInstance);
+            return;
+        }
+        reloadTask = Task.builder().async().execute(BanIndex::load).interval(reloadInterval, TimeUnit.MILLISECONDS)
+                .name("GlM Ban Load Task").submit(pluginInstance);
+    }
+
+    /**
+     * Stop all processes of this class.
+     */
+    public static void stop() {
+        if (reloadTask != null) {
+            reloadTask.cancel();
+            reloadTask = null;
+        }
+        bannedHosts.clear();
+        pendingBans.clear();
+    }
+
+    /**
+     * @param host the host address of a client.
+     * @return true if the host is banned.
+     */
+    public static boolean isBanned(@Nonnull final String host) {
+        return bannedHosts.contains(host);
+    }
+
+    /**
+     * Bans a host. The ban takes effect right away and is written to the sql server in the background. Only the
+     * {@link net.reallifegames.glm.sponge.server.CommandRegistrarWb} registrar bans, the server uses the
+     * {@link net.reallifegames.glm.sponge.server.CommandRegistrarWk} registrar which kicks instead.
+     *
+     * @param host the host address of the client.
+     * @param uuid the map id the client used.
+     */
+    public static void ban(@Nonnull final String host, @Nonnull final String uuid) {
+        // Keep the ban through reloads until it is read back
+        pendingBans.add(host);
+        if (!bannedHosts.add(host)) {
+            return;
+        }
+        Task.builder().async().execute(()->{
+            try (Connection databaseConnection = pluginInstance.getDataSource().getConnection()) {
+                SqlModule.insertBan(databaseConnection, host, uuid);
+            } catch (SQLException e) {
+                // The ban will never be read back, so let the next reload decide
+                pendingBans.remove(host);
+                pluginInstance.getLogger().error("Error getting sql database: ", e);
+            }
+        }).name("GlM Ban Write Task").submit(pluginInstance);
+    }
+
+    /**
+     * @return the number of banned hosts.
+     */
+    public static int getBanCount() {
+        return bannedHosts.size();
+    }
+
+    /**
+     * Reads every ban from the sql server and replaces the index with them. Bans this server added which were not read back yet are kept.
+     */
+    private static void load() {
+        final Set<String> loadedHosts = new HashSet<>();
+        try (Connection databaseConnection = pluginInstance.getDataSource().getConnection();
+             PreparedStatement preparedStatement = databaseConnection.prepareStatement("SELECT " + HOST_COLUMN +
+                     " FROM " + pluginInstance.getConfig().getDatabaseTablePrefix() + BANS_TABLE);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            while (resultSet.next()) {
+                final String host = resultSet.getString(1);
+                if (host != null) {
+                    loadedHosts.add(host);
+                }
+            }
+        } catch (SQLException e) {
+            pluginInstance.getLogger().error("Error loading web map bans: ", e);
+            return;
+        }
+        bannedHosts.addAll(loadedHosts);
+        pendingBans.removeAll(loadedHosts);
+        // Drop bans which were removed from the sql server
+        bannedHosts.removeIf(host->!loadedHosts.contains(host) && !pendingBans.contains(host));
+    }
+}
@@ -0,0 +1,641 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge;
+
+import com.flowpowered.math.vector.Vector3i;
+import net.reallifegames.glm.GzipGlmChunk;
+import net.reallifegames.glm.api.GlmChunk;
+import net.reallifegames.glm.module.SqlModule;
+import net.reallifegames.glm.sponge.server.ChunkBudget;
+import net.reallifegames.glm.sponge.server.ChunkStream;
+import net.reallifegames.glm.sponge.server.ClientSession;
+import org.java_websocket.WebSocket;
+import org.spongepowered.api.scheduler.Task;
+import org.spongepowered.api.world.Chunk;
+import org.spongepowered.api.world.World;
+import org.spongepowered.api.world.WorldBorder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.net.InetSocketAddress;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Moves client chunk requests off of the WebSocket threads. Cache and sql work is done on a pool of worker threads,
+ * while any work which needs to touch live world state is queued and run in one batch on the main thread each tick.
+ * Concurrent requests for the same chunk share a single sql read, refresh or generation.
+ *
+ * @author Tyler Bucher
+ */
+public final class ChunkPipeline {
+
+    /**
+     * Work which needs to be run on the main thread during the next tick.
+     */
+    @Nonnull
+    private static final ConcurrentLinkedQueue<Runnable> mainThreadQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Chunks which are currently being read from sql, refreshed or generated, keyed by world and chunk position. Any
+     * request for one of these chunks waits on the existing work instead of starting its own.
+     */
+    @Nonnull
+    private static final ConcurrentHashMap<String, CompletableFuture<GlmChunk>> inFlightChunks = new ConcurrentHashMap<>();
+
+    /**
+     * The instance of the {@link GlMap} plugin.
+     */
+    private static GlMap pluginInstance;
+
+    /**
+     * The pool of threads which handle cache and sql work for client requests.
+     */
+    private static ExecutorService workerPool;
+
+    /**
+     * A single thread which writes chunks to the sql server so updates for the same chunk stay in order.
+     */
+    private static ExecutorService sqlWriter;
+
+    /**
+     * Completes chunk futures which were not resolved in time so no request waits on them forever.
+     */
+    private static ScheduledThreadPoolExecutor timeoutScheduler;
+
+    /**
+     * Sponge task which drains the {@link #mainThreadQueue} every tick.
+     */
+    private static Task mainThreadTask;
+
+    /**
+     * Initializes this class. Starts the worker threads and the sponge task for main thread work.
+     *
+     * @param pluginInstance the instance of {@link GlMap}.
+     */
+    public static void init(@Nonnull final GlMap pluginInstance) {
+        ChunkPipeline.pluginInstance = pluginInstance;
+        // Create the worker threads
+        workerPool = Executors.newFixedThreadPool(Math.max(1, pluginInstance.getConfig().getChunkWorkerThreads()),
+                createThreadFactory("Gl Map chunk worker"));
+        sqlWriter = Executors.newSingleThreadExecutor(createThreadFactory("Gl Map sql writer"));
+        timeoutScheduler = new ScheduledThreadPoolExecutor(1, createThreadFactory("Gl Map chunk timeout"));
+        timeoutScheduler.setRemoveOnCancelPolicy(true);
+        // Create the sponge task
+        mainThreadTask = Task.builder().execute(()->{
+            Runnable runnable;
+            while ((runnable = mainThreadQueue.poll()) != null) {
+                runnable.run();
+            }
+        }).intervalTicks(1).name("GlM Main Thread Chunk Task").submit(pluginInstance);
+    }
+
+    /**
+     * Stop all processes of this class. Pending sql writes are given a short amount of time to finish.
+     */
+    public static void stop() {
+        if (mainThreadTask != null) {
+            mainThreadTask.cancel();
+            mainThreadTask = null;
+        }
+        mainThreadQueue.clear();
+        if (workerPool != null) {
+            workerPool.shutdownNow();
+            workerPool = null;
+        }
+        if (timeoutScheduler != null) {
+            timeoutScheduler.shutdownNow();
+            timeoutScheduler = null;
+        }
+        if (sqlWriter != null) {
+            sqlWriter.shutdown();
+            try {
+                if (!sqlWriter.awaitTermination(5, TimeUnit.SECONDS)) {
+                    pluginInstance.getLogger().warn("Not all chunks could be written to the sql server before stopping");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sqlWriter = null;
+        }
+    }
+
+    /**
+     * Runs the given work on the worker pool. If the pool is not running the work is run on the calling thread.
+     *
+     * @param runnable the work to run.
+     */
+    public static void execute(@Nonnull final Runnable runnable) {
+        final ExecutorService pool = workerPool;
+        if (pool == null) {
+            runnable.run();
+            return;
+        }
+        try {
+            pool.execute(()->{
+                try {
+                    runnable.run();
+                } catch (RuntimeException e) {
+                    pluginInstance.getLogger().error("Error processing chunk request: ", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The pool is shutting down
+        }
+    }
+
+    /**
+     * Runs the given sql write on the sql writer thread. If the writer is not running the work is run on the calling
+     * thread.
+     *
+     * @param runnable the sql work to run.
+     */
+    public static void executeSqlWrite(@Nonnull final Runnable runnable) {
+        final ExecutorService writer = sqlWriter;
+        if (writer == null) {
+            runnable.run();
+            return;
+        }
+        try {
+            writer.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            runnable.run();
+        }
+    }
+
+    /**
+     * Queues work which touches live world state to be run on the main thread during the next tick.
+     *
+     * @param supplier the work to run on the main thread.
+     * @param <T>      the type of the result of the work.
+     * @return a future which is completed on the main thread with the result of the work.
+     */
+    @Nonnull
+    public static <T> CompletableFuture<T> runOnMainThread(@Nonnull final Supplier<T> supplier) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        mainThreadQueue.offer(()->{
+            try {
+                future.complete(supplier.get());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Looks up the requested chunks in the cache and sql server. This should be run on a chunk worker thread. Chunks are
+     * streamed to the client in pages as soon as they are available: cached chunks first, then sql chunks, then
+     * expired chunks which are regenerated in one batch on the main thread if they are still loaded.
+     * <p>
+     * Every chunk which is not a fresh cache hit is resolved at most once across all connections. If another request is
+     * already resolving a chunk this request waits on that work and receives the chunk in its own message when it is
+     * done, the same way generated chunks are delivered.
+     * <p>
+     * Chunks claimed through the viewport of the session are released once this request is done with them, so a chunk
+     * which could not be sent is requested again by the next viewport update.
+     *
+     * @param connection     the {@link WebSocket} connection.
+     * @param world          the world of the chunks.
+     * @param chunkLocations the requested chunk positions.
+     */
+    public static void requestChunks(@Nonnull final WebSocket connection, @Nonnull final World world,
+                                     @Nonnull final List<Vector3i> chunkLocations) {
+        requestChunks(connection, world, chunkLocations, true);
+    }
+
+    /**
+     * Looks up the requested chunks in the cache and sql server. If another request failed to resolve a chunk this
+     * request was waiting on, the chunk is treated as a miss and resolved again once when the resolve shared flag is
+     * set, otherwise the client is told to ask for it again later.
+     *
+     * @param connection     the {@link WebSocket} connection.
+     * @param world          the world of the chunks.
+     * @param chunkLocations the requested chunk positions.
+     * @param resolveShared  true if chunks other requests failed to resolve should be resolved again.
+     */
+    private static void requestChunks(@Nonnull final WebSocket connection, @Nonnull final World world,
+                                      @Nonnull final List<Vector3i> chunkLocations, final boolean resolveShared) {
+        final String worldId = world.getUniqueId().toString();
+        final ChunkStream chunkStream = new ChunkStream(pluginInstance, connection, worldId);
+        final ClientSession session = pluginInstance.getBaseGlmServer().getSession(connection).orElse(null);
+        final Map<Vector3i, GlmChunk> expiredChunks = new HashMap<>();
+        final Map<Vector3i, CompletableFuture<GlmChunk>> expiredFutures = new HashMap<>();
+        final Map<Vector3i, CompletableFuture<GlmChunk>> cacheMisses = new LinkedHashMap<>();
+        final Map<Vector3i, CompletableFuture<GlmChunk>> sharedChunks = new HashMap<>();
+        final List<Vector3i> deferredChunks = new ArrayList<>();
+        final List<Vector3i> requestedLocations = new ArrayList<>(chunkLocations.size());
+        // Chunks which are delivered in their own message are released when they are delivered
+        final Set<Vector3i> deliveredLater = new HashSet<>();
+        for (Vector3i requestedLocation : chunkLocations) {
+            final Vector3i chunkLocation = new Vector3i(requestedLocation.getX(), 0, requestedLocation.getZ());
+            requestedLocations.add(chunkLocation);
+            // Check respect for world border
+            if (pluginInstance.getConfig().shouldRespectWorldBorder()) {
+                final Optional<WorldBorder> optionalWorldBorder = pluginInstance.getWorldBorderMap()
+                        .getOrDefault(world.getUniqueId(), Optional.empty());
+                if (optionalWorldBorder.isPresent()) {
+                    final WorldBorder border = optionalWorldBorder.get();
+                    final Vector3i chunkLocationWorldPos = new Vector3i(chunkLocation.getX() << 4, 0, chunkLocation.getZ() << 4);
+                    if (!RequestQueue.containsPosition(chunkLocationWorldPos, border.getCenter(), border.getDiameter() + 2.0d)) {
+                        continue;
+                    }
+                }
+            }
+            final GlmChunk cachedChunk = WorldModuleSponge.chunkInCache(worldId,
+                    chunkLocation.getX(),
+                    chunkLocation.getY(),
+                    chunkLocation.getZ()
+            ) ? WorldModuleSponge.getCacheChunk(worldId, chunkLocation.getX(), chunkLocation.getY(), chunkLocation.getZ()) : null;
+            // Send fresh chunks right away
+            if (cachedChunk != null && !WorldModuleSponge.isExpired(cachedChunk, pluginInstance)) {
+                chunkStream.add(chunkLocation, cachedChunk);
+                continue;
+            }
+            // Wait for the request which already claimed the chunk
+            final String inFlightKey = getInFlightKey(worldId, chunkLocation);
+            CompletableFuture<GlmChunk> inFlight = inFlightChunks.get(inFlightKey);
+            if (inFlight != null) {
+                sharedChunks.put(chunkLocation, inFlight);
+                continue;
+            }
+            // Charge the budget before claiming, so a chunk other requests wait on is never given up for the budget
+            if (cachedChunk == null && ChunkBudget.admit(session, 1, ChunkBudget.COST_SQL) == 0) {
+                deferredChunks.add(chunkLocation);
+                continue;
+            }
+            // Expired chunks which do not fit in the budget are sent as they are
+            if (cachedChunk != null && ChunkBudget.admit(session, 1, ChunkBudget.COST_GENERATE) == 0) {
+                chunkStream.add(chunkLocation, cachedChunk);
+                continue;
+            }
+            final CompletableFuture<GlmChunk> future = new CompletableFuture<>();
+            inFlight = inFlightChunks.putIfAbsent(inFlightKey, future);
+            if (inFlight != null) {
+                sharedChunks.put(chunkLocation, inFlight);
+                continue;
+            }
+            future.whenComplete((glChunk, throwable)->inFlightChunks.remove(inFlightKey, future));
+            expireAfterTimeout(future);
+            if (cachedChunk == null) {
+                // Resolve all cache misses together after the loop
+                cacheMisses.put(chunkLocation, future);
+            } else {
+                // Expired chunks are refreshed on the main thread if they are loaded
+                expiredChunks.put(chunkLocation, cachedChunk);
+                expiredFutures.put(chunkLocation, future);
+            }
+        }
+        // Send cached chunks right away
+        chunkStream.flush();
+        ChunkBudget.sendDeferred(pluginInstance, session, connection, worldId, deferredChunks, ChunkBudget.COST_SQL);
+        // Check the sql server for every cache miss with a single query
+        int queuedChunks = 0;
+        if (!cacheMisses.isEmpty()) {
+            final List<Vector3i> deferredGeneration = new ArrayList<>();
+            try {
+                if (chunkStream.isOpen()) {
+                    buildSql(worldId, cacheMisses, chunkStream);
+                    chunkStream.flush();
+                }
+                // Chunks which are not in the sql server need to be loaded or generated
+                final Iterator<Map.Entry<Vector3i, CompletableFuture<GlmChunk>>> iterator = cacheMisses.entrySet().iterator();
+                while (iterator.hasNext() && chunkStream.isOpen()) {
+                    final Map.Entry<Vector3i, CompletableFuture<GlmChunk>> kvp = iterator.next();
+                    // Chunks which would be loaded or generated over the budget are deferred
+                    if (ChunkBudget.admit(session, 1, ChunkBudget.COST_GENERATE) == 0) {
+                        deferredGeneration.add(kvp.getKey());
+                        continue;
+                    }
+                    if (queueChunk(connection, world, kvp.getKey(), kvp.getValue())) {
+                        deliveredLater.add(kvp.getKey());
+                        deliverLater(connection, session, world, kvp.getKey(), kvp.getValue(), false);
+                        iterator.remove();
+                        queuedChunks++;
+                    }
+                }
+            } catch (SQLException e) {
+                pluginInstance.getLogger().error("Error getting sql database: ", e);
+            } finally {
+                // Give up the claim first so requests waiting on these chunks can claim and resolve them again
+                for (Map.Entry<Vector3i, CompletableFuture<GlmChunk>> kvp : cacheMisses.entrySet()) {
+                    inFlightChunks.remove(getInFlightKey(worldId, kvp.getKey()), kvp.getValue());
+                    kvp.getValue().complete(null);
+                }
+            }
+            ChunkBudget.sendDeferred(pluginInstance, session, connection, worldId, deferredGeneration, ChunkBudget.COST_GENERATE);
+        }
+        // Chunks resolved by other requests are sent when they are ready
+        final List<Vector3i> failedChunks = new ArrayList<>();
+        for (Map.Entry<Vector3i, CompletableFuture<GlmChunk>> kvp : sharedChunks.entrySet()) {
+            if (!kvp.getValue().isDone()) {
+                deliveredLater.add(kvp.getKey());
+                deliverLater(connection, session, world, kvp.getKey(), kvp.getValue(), resolveShared);
+                queuedChunks++;
+                continue;
+            }
+            final GlmChunk sharedChunk = getResolvedChunk(kvp.getValue());
+            if (sharedChunk != null) {
+                chunkStream.add(kvp.getKey(), sharedChunk);
+            } else {
+                failedChunks.add(kvp.getKey());
+            }
+        }
+        // Chunks the other request could not resolve are a miss for this request
+        if (!failedChunks.isEmpty()) {
+            if (resolveShared) {
+                deliveredLater.addAll(failedChunks);
+                ChunkPipeline.execute(()->requestChunks(connection, world, failedChunks, false));
+            } else {
+                ChunkBudget.sendDeferred(pluginInstance, session, connection, worldId, failedChunks, ChunkBudget.COST_SQL);
+            }
+        }
+        if (expiredChunks.isEmpty()) {
+            chunkStream.complete(queuedChunks);
+            releaseChunks(session, worldId, requestedLocations, deliveredLater);
+        } else {
+            final int finalQueuedChunks = queuedChunks;
+            // Regenerate expired chunks which are loaded, all of them in one trip to the main thread
+            ChunkPipeline.runOnMainThread(()->{
+                for (Map.Entry<Vector3i, GlmChunk> kvp : expiredChunks.entrySet()) {
+                    world.getChunk(kvp.getKey()).ifPresent(chunk->
+                            kvp.setValue(WorldModuleSponge.getGlChunk(world, chunk, pluginInstance))
+                    );
+                }
+                return expiredChunks;
+            }).whenComplete((refreshedChunks, throwable)->{
+                if (throwable != null) {
+                    pluginInstance.getLogger().error("Error refreshing chunks: ", throwable);
+                }
+                // Hand the refreshed chunks to any other request waiting on them
+                expiredChunks.forEach((chunkLocation, glChunk)->expiredFutures.get(chunkLocation).complete(glChunk));
+                ChunkPipeline.execute(()->{
+                    expiredChunks.forEach(chunkStream::add);
+                    chunkStream.complete(finalQueuedChunks);
+                    releaseChunks(session, worldId, requestedLocations, deliveredLater);
+                });
+            });
+        }
+    }
+
+    /**
+     * Attempts to build {@link GlmChunk}s from sql data for all of the given chunk locations using one query. Chunks
+     * are added to the cache while there is room, and every chunk is streamed to the client as it is read. Chunks which
+     * are found are removed from the map and their futures are completed.
+     *
+     * @param worldId      the id of the world.
+     * @param chunkFutures the locations of the chunks to look up, with a y value of 0, and their in flight futures.
+     * @param chunkStream  the stream to send the chunks to the client with.
+     * @throws SQLException if a database access error occurs or this method is called on a closed connection.
+     */
+    private static void buildSql(@Nonnull final String worldId, @Nonnull final Map<Vector3i, CompletableFuture<GlmChunk>> chunkFutures,
+                                 @Nonnull final ChunkStream chunkStream) throws SQLException {
+        // Flatten the positions into x and z pairs
+        final List<Integer> sqlPositions = new ArrayList<>(chunkFutures.size() * 2);
+        for (Vector3i chunkLocation : chunkFutures.keySet()) {
+            sqlPositions.add(chunkLocation.getX());
+            sqlPositions.add(chunkLocation.getZ());
+        }
+        try (Connection databaseConnection = pluginInstance.getDataSource().getConnection();
+             PreparedStatement preparedStatement = databaseConnection.prepareStatement(SqlModule.getNewGetChunks(sqlPositions))) {
+            // Set parameters
+            preparedStatement.setString(1, worldId);
+            // Execute query
+            try (ResultSet results = preparedStatement.executeQuery()) {
+                while (results.next()) {
+                    final Vector3i chunkLocation = new Vector3i(results.getInt("X"), 0, results.getInt("Z"));
+                    final GlmChunk sqlChunk;
+                    // Only cache the chunk if there is room in the cache
+                    if (!pluginInstance.getConfig().isCacheLimited() ||
+                            WorldModuleSponge.isRoomInCache(worldId, pluginInstance.getConfig().getMaximumChunksInCache())) {
+                        sqlChunk = WorldModuleSponge.buildFromParametersUnsafe(
+                                worldId,
+                                chunkLocation.getX(),
+                                chunkLocation.getZ(),
+                                results.getLong("generation_time"),
+                                results.getString("chunk_data"),
+                                results.getString("height_data")
+                        );
+                    } else {
+                        sqlChunk = new GzipGlmChunk(
+                                results.getLong("generation_time"),
+                                results.getString("chunk_data"),
+                                results.getString("height_data")
+                        );
+                    }
+                    chunkStream.add(chunkLocation, sqlChunk);
+                    final CompletableFuture<GlmChunk> future = chunkFutures.remove(chunkLocation);
+                    if (future != null) {
+                        future.complete(sqlChunk);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues a chunk to be loaded or generated. The chunk is handed to the {@link RequestQueue} on the main thread, and
+     * the future is completed with the new {@link GlmChunk} on the main thread, or with null if the chunk could not be
+     * loaded.
+     *
+     * @param connection    the {@link WebSocket} connection which asked for the chunk.
+     * @param world         the world of the chunk.
+     * @param chunkLocation the position of the chunk.
+     * @param future        the in flight future of the chunk.
+     * @return true if the chunk will be queued, false if chunks can not be loaded.
+     */
+    private static boolean queueChunk(@Nonnull final WebSocket connection, @Nonnull final World world,
+                                      @Nonnull final Vector3i chunkLocation, @Nonnull final CompletableFuture<GlmChunk> future) {
+        if (!pluginInstance.getConfig().canLoadWorld()) {
+            return false;
+        }
+        final InetSocketAddress address = connection.getRemoteSocketAddress();
+        mainThreadQueue.offer(()->{
+            final boolean queued = RequestQueue.createOrAddToQueue(
+                    chunkLocation,
+                    world.getUniqueId().toString(),
+                    address,
+                    new ChunkRunnable() {
+                        @Override
+                        public void run(@Nonnull final Chunk chunk) {
+                            future.complete(WorldModuleSponge.getGlChunk(world, chunk, pluginInstance));
+                        }
+
+                        @Override
+                        public void cancel() {
+                            future.complete(null);
+                        }
+                    }
+            );
+            if (!queued) {
+                future.complete(null);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Completes a future with null if it is not resolved within the chunk request timeout.
+     *
+     * @param future the in flight future of a chunk.
+     */
+    private static void expireAfterTimeout(@Nonnull final CompletableFuture<GlmChunk> future) {
+        final ScheduledThreadPoolExecutor scheduler = timeoutScheduler;
+        if (scheduler == null) {
+            return;
+        }
+        try {
+            final ScheduledFuture<?> timeout = scheduler.schedule(()->future.complete(null),
+                    pluginInstance.getConfig().getChunkRequestTimeout(), TimeUnit.MILLISECONDS);
+            future.whenComplete((glChunk, throwable)->timeout.cancel(false));
+        } catch (RejectedExecutionException e) {
+            // The scheduler is shutting down
+        }
+    }
+
+    /**
+     * Gets the chunk of a completed future.
+     *
+     * @param future the completed future of a chunk.
+     * @return the chunk or null if the future failed or could not resolve the chunk.
+     */
+    @Nullable
+    private static GlmChunk getResolvedChunk(@Nonnull final CompletableFuture<GlmChunk> future) {
+        return future.isCompletedExceptionally() ? null : future.getNow(null);
+    }
+
+    /**
+     * Sends a chunk to the client in its own message once its future is completed. The chunk is released in the
+     * session afterwards, whether it could be sent or not. If the future could not resolve the chunk and the resolve
+     * again flag is set, the chunk is requested again once for this client instead.
+     *
+     * @param connection    the {@link WebSocket} connection.
+     * @param session       the session of the client or null if it is not known.
+     * @param world         the world of the chunk.
+     * @param chunkLocation the position of the chunk.
+     * @param future        the in flight future of the chunk.
+     * @param resolveAgain  true if the chunk should be requested again if the future could not resolve it.
+     */
+    private static void deliverLater(@Nonnull final WebSocket connection, @Nullable final ClientSession session,
+                                     @Nonnull final World world, @Nonnull final Vector3i chunkLocation,
+                                     @Nonnull final CompletableFuture<GlmChunk> future, final boolean resolveAgain) {
+        final String worldId = world.getUniqueId().toString();
+        future.whenComplete((glChunk, throwable)->{
+            if (!connection.isOpen()) {
+                releaseChunk(session, worldId, chunkLocation);
+            } else if (glChunk != null) {
+                ChunkPipeline.execute(()->{
+                    final ChunkStream chunkStream = new ChunkStream(pluginInstance, connection, worldId);
+                    chunkStream.add(chunkLocation, glChunk);
+                    chunkStream.complete(0);
+                    releaseChunk(session, worldId, chunkLocation);
+                });
+            } else if (resolveAgain) {
+                ChunkPipeline.execute(()->requestChunks(connection, world, Collections.singletonList(chunkLocation), false));
+            } else {
+                releaseChunk(session, worldId, chunkLocation);
+            }
+        });
+    }
+
+    /**
+     * Releases the claimed chunks of a request which are not delivered in their own message. Chunks which were sent
+     * are not affected.
+     *
+     * @param session            the session of the client or null if it is not known.
+     * @param worldId            the id of the world.
+     * @param requestedLocations the positions of the requested chunks.
+     * @param deliveredLater     the positions of the chunks which are released when they are delivered.
+     */
+    private static void releaseChunks(@Nullable final ClientSession session, @Nonnull final String worldId,
+                                      @Nonnull final List<Vector3i> requestedLocations, @Nonnull final Set<Vector3i> deliveredLater) {
+        for (Vector3i chunkLocation : requestedLocations) {
+            if (!deliveredLater.contains(chunkLocation)) {
+                releaseChunk(session, worldId, chunkLocation);
+            }
+        }
+    }
+
+    /**
+     * Releases a claimed chunk so the next viewport update asks for it again if it was not sent.
+     *
+     * @param session       the session of the client or null if it is not known.
+     * @param worldId       the id of the world.
+     * @param chunkLocation the position of the chunk.
+     */
+    private static void releaseChunk(@Nullable final ClientSession session, @Nonnull final String worldId,
+                                     @Nonnull final Vector3i chunkLocation) {
+        if (session != null) {
+            session.releaseChunk(worldId, chunkLocation.getX(), chunkLocation.getZ());
+        }
+    }
+
+    /**
+     * Creates the key used to track a chunk which is being resolved.
+     *
+     * @param worldId       the id of the world.
+     * @param chunkLocation the position of the chunk.
+     * @return the in flight key of the chunk.
+     */
+    @Nonnull
+    private static String getInFlightKey(@Nonnull final String worldId, @Nonnull final Vector3i chunkLocation) {
+        return worldId + ':' + chunkLocation.getX() + ':' + chunkLocation.getZ();
+    }
+
+    /**
+     * @return the current number of chunks being resolved for clients.
+     */
+    public static int getInFlightChunkCount() {
+        return inFlightChunks.size();
+    }
+
+    /**
+     * @return the current number of tasks waiting for the main thread.
+     */
+    public static int getMainThreadQueueSize() {
+        return mainThreadQueue.size();
+    }
+
+    /**
+     * Creates a thread factory which creates numbered daemon threads.
+     *
+     * @param name the base name of the threads.
+     * @return the new thread factory.
+     */
+    @Nonnull
+    private static ThreadFactory createThreadFactory(@Nonnull final String name) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return runnable->{
+            final Thread thread = new Thread(runnable, name + " " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -40,4 +40,10 @@ public interface ChunkRunnable {
      * @param chunk the minecraft {@link Chunk} to use.
      */
     void run(@Nonnull final Chunk chunk);
+
+    /**
+     * Called instead of {@link #run(Chunk)} if the chunk could not be loaded.
+     */
+    default void cancel() {
+    }
 }
@@ -0,0 +1,222 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge;
+
+import com.flowpowered.math.vector.Vector3i;
+import net.reallifegames.glm.api.GlmChunk;
+import net.reallifegames.glm.sponge.server.BaseGlmServer;
+import net.reallifegames.glm.sponge.server.Capabilities;
+import net.reallifegames.glm.sponge.server.ChunkStream;
+import net.reallifegames.glm.sponge.server.ClientSession;
+import net.reallifegames.glm.sponge.server.Viewport;
+import org.spongepowered.api.scheduler.Task;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds information about a chunk which changed since the last push.
+ *
+ * @author Tyler Bucher
+ */
+class ChunkUpdate {
+
+    /**
+     * The {@link java.util.UUID} of the world in string form.
+     */
+    @Nonnull
+    private final String worldId;
+
+    /**
+     * The position of the chunk.
+     */
+    @Nonnull
+    private final Vector3i position;
+
+    /**
+     * The newest version of the chunk.
+     */
+    @Nonnull
+    private final GlmChunk glChunk;
+
+    /**
+     * Creates a new {@link ChunkUpdate} with the given information.
+     *
+     * @param worldId  the {@link java.util.UUID} of the world in string form.
+     * @param position the position of the chunk.
+     * @param glChunk  the newest version of the chunk.
+     */
+    ChunkUpdate(@Nonnull final String worldId, @Nonnull final Vector3i position, @Nonnull final GlmChunk glChunk) {
+        this.worldId = worldId;
+        this.position = position;
+        this.glChunk = glChunk;
+    }
+
+    /**
+     * @return the {@link java.util.UUID} of the world in string form.
+     */
+    @Nonnull
+    public String getWorldId() {
+        return worldId;
+    }
+
+    /**
+     * @return the position of the chunk.
+     */
+    @Nonnull
+    public Vector3i getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the newest version of the chunk.
+     */
+    @Nonnull
+    public GlmChunk getGlChunk() {
+        return glChunk;
+    }
+}
+
+/**
+ * Pushes changed chunks to every client which negotiated chunk pushes and whose viewport contains them, so clients do not have to poll for terrain
+ * changes. Changes are collected and sent once per push interval, which means a chunk is pushed at most once per
+ * interval no matter how often it changes.
+ *
+ * @author Tyler Bucher
+ */
+public final class ChunkUpdatePusher {
+
+    /**
+     * Chunks which changed since the last push, keyed by world and chunk position.
+     */
+    @Nonnull
+    private static final ConcurrentHashMap<String, ChunkUpdate> dirtyChunks = new ConcurrentHashMap<>();
+
+    /**
+     * The instance of the {@link GlMap} plugin.
+     */
+    private static GlMap pluginInstance;
+
+    /**
+     * Sponge task which pushes the changed chunks.
+     */
+    private static Task pushTask;
+
+    /**
+     * Initializes this class. Starts the sponge task which pushes changed chunks if pushing is enabled.
+     *
+     * @param pluginInstance the instance of {@link GlMap}.
+     */
+    public static void init(@Nonnull final GlMap pluginInstance) {
+        ChunkUpdatePusher.pluginInstance = pluginInstance;
+        // Return because chunk pushes are disabled
+        if (pluginInstance.getConfig().getChunkPushInterval() <= 0) {
+            return;
+        }
+        pushTask = Task.builder().async().execute(ChunkUpdatePusher::push)
+                .interval(pluginInstance.getConfig().getChunkPushInterval(), TimeUnit.MILLISECONDS)
+                .name("GlM Chunk Push Task").submit(pluginInstance);
+    }
+
+    /**
+     * Stop all processes of this class.
+     */
+    public static void stop() {
+        if (pushTask != null) {
+            pushTask.cancel();
+            pushTask = null;
+        }
+        dirtyChunks.clear();
+    }
+
+    /**
+     * Marks a chunk as changed. Only the newest version of a chunk is kept until the next push.
+     *
+     * @param worldId  the {@link java.util.UUID} of the world in string form.
+     * @param position the position of the chunk.
+     * @param glChunk  the newest version of the chunk.
+     */
+    public static void markDirty(@Nonnull final String worldId, @Nonnull final Vector3i position, @Nonnull final GlmChunk glChunk) {
+        if (pushTask == null) {
+            return;
+        }
+        dirtyChunks.put(worldId + ':' + position.getX() + ':' + position.getZ(),
+                new ChunkUpdate(worldId, new Vector3i(position.getX(), 0, position.getZ()), glChunk));
+    }
+
+    /**
+     * Sends every changed chunk to the clients which are viewing it.
+     */
+    private static void push() {
+        final BaseGlmServer baseGlmServer = pluginInstance.getBaseGlmServer();
+        if (dirtyChunks.isEmpty() || baseGlmServer == null) {
+            return;
+        }
+        // Take the current changes and group them by world
+        final Map<String, List<ChunkUpdate>> worldUpdates = new HashMap<>();
+        for (Map.Entry<String, ChunkUpdate> kvp : dirtyChunks.entrySet()) {
+            final ChunkUpdate update = kvp.getValue();
+            // Only remove the update we send, a newer one put since then is sent next time
+            if (dirtyChunks.remove(kvp.getKey(), update)) {
+                worldUpdates.computeIfAbsent(update.getWorldId(), k->new ArrayList<>()).add(update);
+            }
+        }
+        for (ClientSession session : baseGlmServer.getSessions()) {
+            final Viewport viewport = session.getViewport();
+            // Only clients which asked for pushes and sent a viewport are subscribed to chunk updates
+            if (viewport == null || !session.getCapabilities().hasFeature(Capabilities.FEATURE_CHUNK_PUSH) ||
+                    !session.getConnection().isOpen()) {
+                continue;
+            }
+            final List<ChunkUpdate> updates = worldUpdates.get(viewport.getWorldId());
+            if (updates == null) {
+                continue;
+            }
+            ChunkStream chunkStream = null;
+            for (ChunkUpdate update : updates) {
+                if (viewport.contains(update.getWorldId(), update.getPosition().getX(), update.getPosition().getZ())) {
+                    if (chunkStream == null) {
+                        chunkStream = new ChunkStream(pluginInstance, session.getConnection(), viewport.getWorldId());
+                    }
+                    chunkStream.add(update.getPosition(), update.getGlChunk());
+                }
+            }
+            if (chunkStream != null) {
+                chunkStream.complete(0);
+            }
+        }
+    }
+
+    /**
+     * @return the number of changed chunks waiting to be pushed.
+     */
+    public static int getDirtyChunkCount() {
+        return dirtyChunks.size();
+    }
+}
@@ -25,6 +25,7 @@ package net.reallifegames.glm.sponge;
 
 import com.google.common.reflect.TypeToken;
 import net.reallifegames.glm.api.GlmChunk;
+import net.reallifegames.glm.sponge.server.RateLimit;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import ninja.leaping.configurate.objectmapping.ObjectMappingException;
 import org.spongepowered.api.asset.Asset;
@@ -33,7 +34,9 @@ import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -96,6 +99,26 @@ public class ConfigurationFile {
      */
     private boolean useSsl;
 
+    /**
+     * True if the web socket server should offer permessage-deflate compression.
+     */
+    private boolean useCompression;
+
+    /**
+     * The deflate compression level from 0 to 9.
+     */
+    private int compressionLevel;
+
+    /**
+     * The minimum size in bytes of a message before it is compressed.
+     */
+    private int compressionThreshold;
+
+    /**
+     * True if clients should reset their compression context after every message.
+     */
+    private boolean clientNoContextTakeover;
+
     /**
      * The url of the map.
      */
@@ -106,6 +129,51 @@ public class ConfigurationFile {
      */
     private int maxWarns;
 
+    /**
+     * The rate limits of the web map commands, keyed by command name.
+     */
+    private Map<String, RateLimit> commandRateLimits;
+
+    /**
+     * The rate limit of commands without their own limit.
+     */
+    private RateLimit defaultRateLimit;
+
+    /**
+     * The rate limit of all messages from one ip address.
+     */
+    private RateLimit ipRateLimit;
+
+    /**
+     * The time in milliseconds an ip address is remembered after it was last seen.
+     */
+    private long ipHistoryLifetime;
+
+    /**
+     * The chunk request cost each client can spend per second and save up.
+     */
+    private RateLimit chunkBudget;
+
+    /**
+     * The maximum number of open web map connections.
+     */
+    private int maxConnections;
+
+    /**
+     * The maximum number of open web map connections from one ip address.
+     */
+    private int maxConnectionsPerIp;
+
+    /**
+     * The rate at which new web map connections are admitted.
+     */
+    private RateLimit handshakeRateLimit;
+
+    /**
+     * The maximum random time in milliseconds added to the retry time of refused connections.
+     */
+    private long admissionJitter;
+
     /**
      * The amount of time in milliseconds which a {@link GlmChunk} can live in the cache.
      */
@@ -116,6 +184,41 @@ public class ConfigurationFile {
      */
     private long playerRequestTime;
 
+    /**
+     * The amount of ticks between samples of the player positions.
+     */
+    private int playerSampleTicks;
+
+    /**
+     * The distance in blocks a player has to move before the move is sent in a player delta.
+     */
+    private double playerMoveThreshold;
+
+    /**
+     * The number of player deltas sent to a client between two full keyframes.
+     */
+    private int playerKeyframeInterval;
+
+    /**
+     * The amount of ticks between refreshes of the hidden player cache.
+     */
+    private int hiddenRefreshTicks;
+
+    /**
+     * The distance in blocks around a client's viewport in which players are still sent.
+     */
+    private int playerViewMargin;
+
+    /**
+     * The number of samples kept in the movement trail of each player.
+     */
+    private int playerTrailLength;
+
+    /**
+     * The amount of time in milliseconds the trail of a player who is no longer seen is kept.
+     */
+    private long playerTrailLifetime;
+
     /**
      * The amount of time in between calls for general commands like 'init'.
      */
@@ -131,6 +234,46 @@ public class ConfigurationFile {
      */
     private int tickInterval;
 
+    /**
+     * The number of threads used to process client chunk requests.
+     */
+    private int chunkWorkerThreads;
+
+    /**
+     * The amount of time in milliseconds a chunk may be loaded or generated for before its requests give up on it.
+     */
+    private long chunkRequestTimeout;
+
+    /**
+     * The number of threads used to run client commands which carry a request id.
+     */
+    private int commandWorkerThreads;
+
+    /**
+     * The maximum number of commands with a request id one client may have waiting or running.
+     */
+    private int maxRequestsInFlight;
+
+    /**
+     * The maximum size in bytes of one page of chunks sent to a client.
+     */
+    private int maxChunkPageSize;
+
+    /**
+     * The maximum number of chunks a client viewport may cover.
+     */
+    private int maxViewportChunks;
+
+    /**
+     * The maximum number of sent chunks tracked for each client.
+     */
+    private int maxTrackedChunks;
+
+    /**
+     * The time in milliseconds between pushes of updated chunks to clients.
+     */
+    private long chunkPushInterval;
+
     /**
      * The name of the default world for the map to load.
      */
@@ -176,6 +319,11 @@ public class ConfigurationFile {
      */
     private String databaseTablePrefix; //todo get two new vars from config and use thoes for the new glm server command
 
+    /**
+     * The time in milliseconds between reloads of the web map bans from the database.
+     */
+    private long banReloadInterval;
+
     /**
      * Should the plugin only allow certified map uuid's to connect.
      */
@@ -242,13 +390,48 @@ public class ConfigurationFile {
             port = config.getNode("glm", "port").getInt();
             address = config.getNode("glm", "address").getString();
             useSsl = config.getNode("glm", "useSsl").getBoolean();
+            useCompression = config.getNode("glm", "useCompression").getBoolean(true);
+            compressionLevel = config.getNode("glm", "compressionLevel").getInt(6);
+            compressionThreshold = config.getNode("glm", "compressionThreshold").getInt(1024);
+            clientNoContextTakeover = config.getNode("glm", "clientNoContextTakeover").getBoolean(false);
             url = config.getNode("glm", "url").getString();
             maxWarns = config.getNode("glm", "maxWarns").getInt();
+            commandRateLimits = new HashMap<>();
+            for (Map.Entry<Object, ? extends CommentedConfigurationNode> entry :
+                    config.getNode("glm", "commandRateLimits").getChildrenMap().entrySet()) {
+                commandRateLimits.put(entry.getKey().toString(), new RateLimit(entry.getValue().getNode("rate").getDouble(),
+                        entry.getValue().getNode("burst").getDouble()));
+            }
+            defaultRateLimit = commandRateLimits.getOrDefault("default", new RateLimit(20, 40));
+            chunkBudget = new RateLimit(config.getNode("glm", "chunkBudgetRate").getDouble(2000),
+                    config.getNode("glm", "chunkBudgetBurst").getDouble(8000));
+            maxConnections = config.getNode("glm", "maxConnections").getInt(1000);
+            maxConnectionsPerIp = config.getNode("glm", "maxConnectionsPerIp").getInt(8);
+            handshakeRateLimit = new RateLimit(config.getNode("glm", "handshakeRate").getDouble(20),
+                    config.getNode("glm", "handshakeBurst").getDouble(100));
+            admissionJitter = config.getNode("glm", "admissionJitter").getLong(5000);
+            ipRateLimit = new RateLimit(config.getNode("glm", "ipRate").getDouble(50), config.getNode("glm", "ipBurst").getDouble(100));
+            ipHistoryLifetime = config.getNode("glm", "ipHistoryLifetime").getLong(600000);
             chunkCacheLifetime = config.getNode("glm", "chunkCacheLifetime").getLong();
             playerRequestTime = config.getNode("glm", "playerRequestTime").getLong();
+            playerSampleTicks = config.getNode("glm", "playerSampleTicks").getInt(20);
+            playerMoveThreshold = config.getNode("glm", "playerMoveThreshold").getDouble(0.25);
+            playerKeyframeInterval = config.getNode("glm", "playerKeyframeInterval").getInt(60);
+            hiddenRefreshTicks = config.getNode("glm", "hiddenRefreshTicks").getInt(1200);
+            playerViewMargin = config.getNode("glm", "playerViewMargin").getInt(64);
+            playerTrailLength = config.getNode("glm", "playerTrailLength").getInt(32);
+            playerTrailLifetime = config.getNode("glm", "playerTrailLifetime").getLong(300000);
             generalCommandInterval = config.getNode("glm", "generalCommandInterval").getLong();
             totalTickPercentage = config.getNode("glm", "totalTickPercentage").getFloat();
             tickInterval = config.getNode("glm", "tickInterval").getInt();
+            chunkWorkerThreads = config.getNode("glm", "chunkWorkerThreads").getInt(2);
+            chunkRequestTimeout = config.getNode("glm", "chunkRequestTimeout").getLong(60000);
+            commandWorkerThreads = config.getNode("glm", "commandWorkerThreads").getInt(2);
+            maxRequestsInFlight = config.getNode("glm", "maxRequestsInFlight").getInt(16);
+            maxChunkPageSize = config.getNode("glm", "maxChunkPageSize").getInt(262144);
+            maxViewportChunks = config.getNode("glm", "maxViewportChunks").getInt(4096);
+            maxTrackedChunks = config.getNode("glm", "maxTrackedChunks").getInt(65536);
+            chunkPushInterval = config.getNode("glm", "chunkPushInterval").getLong(1000);
             defaultWorld = config.getNode("glm", "defaultWorld").getString();
             try {
                 worldList = config.getNode("glm", "worldList").getList(TypeToken.of(String.class));
@@ -263,6 +446,7 @@ public class ConfigurationFile {
             maximumChunksInCache = config.getNode("glm", "maximumChunksInCache").getInt();
             jdbcDatabaseUrl = config.getNode("glm", "jdbcDatabaseUrl").getString();
             databaseTablePrefix = config.getNode("glm", "databaseTablePrefix").getString();
+            banReloadInterval = config.getNode("glm", "banReloadInterval").getLong(300000);
             certifiedUuids = config.getNode("glm", "certifiedUuids").getBoolean();
             try {
                 uuidList = config.getNode("glm", "uuidList").getList(TypeToken.of(String.class));
@@ -339,6 +523,34 @@ public class ConfigurationFile {
         return useSsl;
     }
 
+    /**
+     * @return true if the web socket server should offer permessage-deflate compression.
+     */
+    public boolean useCompression() {
+        return useCompression;
+    }
+
+    /**
+     * @return the deflate compression level from 0 to 9.
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * @return the minimum size in bytes of a message before it is compressed.
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * @return true if clients should reset their compression context after every message.
+     */
+    public boolean isClientNoContextTakeover() {
+        return clientNoContextTakeover;
+    }
+
     /**
      * @return the url of the map.
      */
@@ -352,7 +564,70 @@ public class ConfigurationFile {
      * command interval.
      */
     public long getMaxWarns() {
-        return chunkCacheLifetime;
+        return maxWarns;
+    }
+
+    /**
+     * Gets the rate limit of a web map command.
+     *
+     * @param command the name of the command.
+     * @return the rate limit of the command or the default limit if the command has none.
+     */
+    @Nonnull
+    public RateLimit getCommandRateLimit(@Nonnull final String command) {
+        return commandRateLimits.getOrDefault(command, defaultRateLimit);
+    }
+
+    /**
+     * @return the chunk request cost each client can spend per second and save up.
+     */
+    @Nonnull
+    public RateLimit getChunkBudget() {
+        return chunkBudget;
+    }
+
+    /**
+     * @return the maximum number of open web map connections.
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * @return the maximum number of open web map connections from one ip address.
+     */
+    public int getMaxConnectionsPerIp() {
+        return maxConnectionsPerIp;
+    }
+
+    /**
+     * @return the rate at which new web map connections are admitted.
+     */
+    @Nonnull
+    public RateLimit getHandshakeRateLimit() {
+        return handshakeRateLimit;
+    }
+
+    /**
+     * @return the maximum random time in milliseconds added to the retry time of refused connections.
+     */
+    public long getAdmissionJitter() {
+        return admissionJitter;
+    }
+
+    /**
+     * @return the rate limit of all messages from one ip address.
+     */
+    @Nonnull
+    public RateLimit getIpRateLimit() {
+        return ipRateLimit;
+    }
+
+    /**
+     * @return the time in milliseconds an ip address is remembered after it was last seen.
+     */
+    public long getIpHistoryLifetime() {
+        return ipHistoryLifetime;
     }
 
     /**
@@ -369,6 +644,55 @@ public class ConfigurationFile {
         return playerRequestTime;
     }
 
+    /**
+     * @return the amount of ticks between samples of the player positions.
+     */
+    public int getPlayerSampleTicks() {
+        return playerSampleTicks;
+    }
+
+    /**
+     * @return the distance in blocks a player has to move before the move is sent in a player delta.
+     */
+    public double getPlayerMoveThreshold() {
+        return playerMoveThreshold;
+    }
+
+    /**
+     * @return the number of player deltas sent to a client between two full keyframes.
+     */
+    public int getPlayerKeyframeInterval() {
+        return playerKeyframeInterval;
+    }
+
+    /**
+     * @return the amount of ticks between refreshes of the hidden player cache.
+     */
+    public int getHiddenRefreshTicks() {
+        return hiddenRefreshTicks;
+    }
+
+    /**
+     * @return the distance in blocks around a client's viewport in which players are still sent.
+     */
+    public int getPlayerViewMargin() {
+        return playerViewMargin;
+    }
+
+    /**
+     * @return the number of samples kept in the movement trail of each player.
+     */
+    public int getPlayerTrailLength() {
+        return playerTrailLength;
+    }
+
+    /**
+     * @return the amount of time in milliseconds the trail of a player who is no longer seen is kept.
+     */
+    public long getPlayerTrailLifetime() {
+        return playerTrailLifetime;
+    }
+
     /**
      * @return the amount of time in between calls for general commands like 'init'.
      */
@@ -390,6 +714,62 @@ public class ConfigurationFile {
         return tickInterval;
     }
 
+    /**
+     * @return the number of threads used to process client chunk requests.
+     */
+    public int getChunkWorkerThreads() {
+        return chunkWorkerThreads;
+    }
+
+    /**
+     * @return the amount of time in milliseconds a chunk may be loaded or generated for before its requests give up.
+     */
+    public long getChunkRequestTimeout() {
+        return chunkRequestTimeout;
+    }
+
+    /**
+     * @return the number of threads used to run client commands which carry a request id.
+     */
+    public int getCommandWorkerThreads() {
+        return commandWorkerThreads;
+    }
+
+    /**
+     * @return the maximum number of commands with a request id one client may have waiting or running.
+     */
+    public int getMaxRequestsInFlight() {
+        return maxRequestsInFlight;
+    }
+
+    /**
+     * @return the maximum size in bytes of one page of chunks sent to a client.
+     */
+    public int getMaxChunkPageSize() {
+        return maxChunkPageSize;
+    }
+
+    /**
+     * @return the maximum number of chunks a client viewport may cover.
+     */
+    public int getMaxViewportChunks() {
+        return maxViewportChunks;
+    }
+
+    /**
+     * @return the maximum number of sent chunks tracked for each client.
+     */
+    public int getMaxTrackedChunks() {
+        return maxTrackedChunks;
+    }
+
+    /**
+     * @return the time in milliseconds between pushes of updated chunks to clients.
+     */
+    public long getChunkPushInterval() {
+        return chunkPushInterval;
+    }
+
     /**
      * @return the name of the default world for the map to load.
      */
@@ -457,6 +837,13 @@ public class ConfigurationFile {
         return databaseTablePrefix;
     }
 
+    /**
+     * @return the time in milliseconds between reloads of the web map bans from the database.
+     */
+    public long getBanReloadInterval() {
+        return banReloadInterval;
+    }
+
     /**
      * @return true if the plugin should only allow certified map uuid's to connect false otherwise.
      */
@@ -25,15 +25,21 @@ package net.reallifegames.glm.sponge;
 
 import net.reallifegames.glm.module.SqlModule;
 import net.reallifegames.glm.module.SslModule;
-import net.reallifegames.glm.server.GlmServer;
 import net.reallifegames.glm.sponge.events.GlmRegisterCommand;
 import net.reallifegames.glm.sponge.server.BaseGlmServer;
+import net.reallifegames.glm.sponge.server.BlockStateTable;
+import net.reallifegames.glm.sponge.server.CachedResponse;
+import net.reallifegames.glm.sponge.server.DraftWebSocketServerFactory;
+import net.reallifegames.glm.sponge.server.GlmDeflateDraft;
+import net.reallifegames.glm.sponge.server.GlmDeflateExtension;
 import net.reallifegames.glm.sponge.commands.CommandRegistrar;
 import net.reallifegames.glm.sponge.eventlisteners.EventRegistrar;
 import net.reallifegames.glm.sponge.server.command.*;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import ninja.leaping.configurate.loader.ConfigurationLoader;
+import org.java_websocket.WebSocketServerFactory;
 import org.java_websocket.server.DefaultSSLWebSocketServerFactory;
+import org.java_websocket.server.DefaultWebSocketServerFactory;
 import org.slf4j.Logger;
 import org.spongepowered.api.GameState;
 import org.spongepowered.api.Sponge;
@@ -61,6 +67,7 @@ import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Main plugin class that sponge will load. You should only attempt to inject dependencies into this class.
@@ -118,10 +125,15 @@ public final class GlMap {
      */
     private List<BlockState> stateList;
 
+    /**
+     * The hashed and compressed form of {@link #stateList} which is sent to clients.
+     */
+    private BlockStateTable stateTable;
+
     /**
      * The server to respond to client requests with.
      */
-    private GlmServer baseGlmServer;
+    private BaseGlmServer baseGlmServer;
 
     /**
      * The sql service for this plugin.
@@ -134,14 +146,9 @@ public final class GlMap {
     private Cause chunkLoadCause;
 
     /**
-     * The world border map for the list of worlds.
-     */
-    private final Map<UUID, Optional<WorldBorder>> worldBorderMap = new HashMap<>();
-
-    /**
-     * The map of client uuid's.
+     * The world border map for the list of worlds. Written on the main thread and read by the chunk workers.
      */
-    private final Map<String, String> clientMapIdMap = new HashMap<>();
+    private final Map<UUID, Optional<WorldBorder>> worldBorderMap = new ConcurrentHashMap<>();
 
     /**
      * The {@link GamePreInitializationEvent} is triggered. During this state, the plugin gets ready for initialization.
@@ -198,6 +205,7 @@ public final class GlMap {
         }
         // Create and sort all of the block types
         stateList = new ArrayList<>(Sponge.getGame().getRegistry().getAllOf(BlockState.class));
+        stateTable = BlockStateTable.create(stateList);
     }
 
     /**
@@ -212,19 +220,38 @@ public final class GlMap {
         for (World world : Sponge.getServer().getWorlds()) {
             if (this.config.getWorldList().contains(world.getName())) {
                 this.worldBorderMap.put(world.getUniqueId(), Optional.of(world.getWorldBorder()));
+                WorldModuleSponge.initializeWorldCache(world.getUniqueId().toString());
             }
         }
+        // Init chunk request pipeline
+        ChunkPipeline.init(this);
+        ChunkUpdatePusher.init(this);
+        HiddenPlayers.init(this);
+        BanIndex.init(this);
+        PlayerTracker.init(this);
         // Init chunk load queue
         RequestQueue.init(this);
         // Start the GL server
         baseGlmServer = new BaseGlmServer(new InetSocketAddress(config.getGlServerAddress(), config.getGlServerPort()), this);
+        WebSocketServerFactory webSocketFactory = new DefaultWebSocketServerFactory();
         if (config.useSsl()) {
             try {
-                baseGlmServer.setWebSocketFactory(new DefaultSSLWebSocketServerFactory(SslModule.getSSLContextFromKeystore()));
+                webSocketFactory = new DefaultSSLWebSocketServerFactory(SslModule.getSSLContextFromKeystore());
             } catch (NoSuchAlgorithmException e) {
                 logger.warn("Unable to make the WebSocket server ssl secure", e);
             }
         }
+        // Offer permessage-deflate to clients which support it
+        if (config.useCompression()) {
+            webSocketFactory = new DraftWebSocketServerFactory(webSocketFactory, Collections.singletonList(new GlmDeflateDraft(
+                    new GlmDeflateExtension(
+                            config.getCompressionLevel(),
+                            config.getCompressionThreshold(),
+                            config.isClientNoContextTakeover()
+                    )
+            )));
+        }
+        baseGlmServer.setWebSocketFactory(webSocketFactory);
         if (!Sponge.getEventManager().post(new GlmRegisterCommand(Cause.of(EventContext.builder().add(
                 EventContextKeys.PLUGIN, this.getPluginContainer()).build(), this), baseGlmServer))) {
             // Register available commands
@@ -234,6 +261,9 @@ public final class GlMap {
             baseGlmServer.getRegistrar().registerCommand("getPlayers", new GetPlayers(this));
             baseGlmServer.getRegistrar().registerCommand("getChunksForPositions", new GetChunksForPositions(this));
             baseGlmServer.getRegistrar().registerCommand("setClientUuid", new SetClientUuid(this));
+            baseGlmServer.getRegistrar().registerCommand("setViewport", new SetViewport(this));
+            baseGlmServer.getRegistrar().registerCommand("getStates", new GetStates(this));
+            baseGlmServer.getRegistrar().registerCommand("getPlayerTrails", new GetPlayerTrails(this));
         }
         baseGlmServer.start();
         baseGlmServer.setTcpNoDelay(true);
@@ -252,6 +282,11 @@ public final class GlMap {
         if (!config.isLoaded()) {
             return;
         }
+        // Stop pushing chunk updates
+        ChunkUpdatePusher.stop();
+        // Stop sampling players
+        PlayerTracker.stop();
+        HiddenPlayers.stop();
         // Stop the server
         if (baseGlmServer != null) {
             try {
@@ -261,8 +296,12 @@ public final class GlMap {
                 logger.error("Error stopping the gl web socket server: ", e);
             }
         }
+        BanIndex.stop();
+        CachedResponse.clearGameStateResponses();
         // stop request queue
         RequestQueue.stop();
+        // stop chunk request pipeline
+        ChunkPipeline.stop();
     }
 
     /**
@@ -321,6 +360,14 @@ public final class GlMap {
         return stateList;
     }
 
+    /**
+     * @return the block state table which is sent to clients.
+     */
+    @Nonnull
+    public BlockStateTable getStateTable() {
+        return stateTable;
+    }
+
     /**
      * @return the database source for this plugin.
      *
@@ -338,7 +385,7 @@ public final class GlMap {
      * @return the WebSocket server.
      */
     @Nonnull
-    public GlmServer getBaseGlmServer() {
+    public BaseGlmServer getBaseGlmServer() {
         return baseGlmServer;
     }
 
@@ -355,11 +402,4 @@ public final class GlMap {
     public Map<UUID, Optional<WorldBorder>> getWorldBorderMap() {
         return worldBorderMap;
     }
-
-    /**
-     * @return the map of client uuid's.
-     */
-    public Map<String, String> getClientMapIdMap() {
-        return clientMapIdMap;
-    }
 }
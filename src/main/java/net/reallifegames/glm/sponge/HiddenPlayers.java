@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge;
+
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.scheduler.Task;
+
+import javax.annotation.Nonnull;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches which online players are hidden from the web map with the {@code glm.map.hide} permission, so the player
+ * sampling does not need a permission lookup per player. The cache is updated when a player joins or leaves, when
+ * the toggle command is used and by a periodic refresh which picks up changes made by permission plugins.
+ *
+ * @author Tyler Bucher
+ */
+public final class HiddenPlayers {
+
+    /**
+     * The permission which hides a player from the web map.
+     */
+    public static final String HIDE_PERMISSION = "glm.map.hide";
+
+    /**
+     * The ids of the online players who are hidden.
+     */
+    @Nonnull
+    private static final Set<UUID> hiddenPlayers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Sponge task which refreshes the cache.
+     */
+    private static Task refreshTask;
+
+    /**
+     * Initializes this class. Fills the cache and starts the sponge task which refreshes it.
+     *
+     * @param pluginInstance the instance of {@link GlMap}.
+     */
+    public static void init(@Nonnull final GlMap pluginInstance) {
+        refresh();
+        final int refreshTicks = pluginInstance.getConfig().getHiddenRefreshTicks();
+        // Return because the periodic refresh is disabled
+        if (refreshTicks <= 0) {
+            return;
+        }
+        refreshTask = Task.builder().execute(HiddenPlayers::refresh).intervalTicks(refreshTicks)
+                .name("GlM Hidden Player Refresh Task").submit(pluginInstance);
+    }
+
+    /**
+     * Stop all processes of this class.
+     */
+    public static void stop() {
+        if (refreshTask != null) {
+            refreshTask.cancel();
+            refreshTask = null;
+        }
+        hiddenPlayers.clear();
+    }
+
+    /**
+     * Reads the permission of a player and updates the cache. Must be called on the main thread.
+     *
+     * @param player the player to update.
+     */
+    public static void update(@Nonnull final Player player) {
+        setHidden(player.getUniqueId(), player.hasPermission(HIDE_PERMISSION));
+    }
+
+    /**
+     * Sets if a player is hidden.
+     *
+     * @param playerId the id of the player.
+     * @param hidden   true if the player is hidden from the web map.
+     */
+    public static void setHidden(@Nonnull final UUID playerId, final boolean hidden) {
+        if (hidden) {
+            hiddenPlayers.add(playerId);
+        } else {
+            hiddenPlayers.remove(playerId);
+        }
+    }
+
+    /**
+     * Removes a player who left the server.
+     *
+     * @param playerId the id of the player.
+     */
+    public static void remove(@Nonnull final UUID playerId) {
+        hiddenPlayers.remove(playerId);
+    }
+
+    /**
+     * @param playerId the id of the player.
+     * @return true if the player is hidden from the web map.
+     */
+    public static boolean isHidden(@Nonnull final UUID playerId) {
+        return hiddenPlayers.contains(playerId);
+    }
+
+    /**
+     * @return the number of hidden online players.
+     */
+    public static int getHiddenCount() {
+        return hiddenPlayers.size();
+    }
+
+    /**
+     * Reads the permission of every online player. Must be called on the main thread.
+     */
+    private static void refresh() {
+        for (Player player : Sponge.getServer().getOnlinePlayers()) {
+            update(player);
+        }
+        // Drop players who left without a disconnect event
+        hiddenPlayers.removeIf(playerId->!Sponge.getServer().getPlayer(playerId).isPresent());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The position of a visible player at the time a {@link PlayerSnapshot} was taken.
+ *
+ * @author Tyler Bucher
+ */
+public final class PlayerPosition {
+
+    /**
+     * The name of the player.
+     */
+    @Nonnull
+    private final String name;
+
+    /**
+     * The {@link java.util.UUID} of the player in string form.
+     */
+    @Nonnull
+    private final String id;
+
+    /**
+     * The x position of the player.
+     */
+    private final double x;
+
+    /**
+     * The y position of the player.
+     */
+    private final double y;
+
+    /**
+     * The z position of the player.
+     */
+    private final double z;
+
+    /**
+     * Creates a new {@link PlayerPosition} with the given information.
+     *
+     * @param name the name of the player.
+     * @param id   the {@link java.util.UUID} of the player in string form.
+     * @param x    the x position of the player.
+     * @param y    the y position of the player.
+     * @param z    the z position of the player.
+     */
+    public PlayerPosition(@Nonnull final String name, @Nonnull final String id, final double x, final double y, final double z) {
+        this.name = name;
+        this.id = id;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * @return the name of the player.
+     */
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the {@link java.util.UUID} of the player in string form.
+     */
+    @Nonnull
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the x position of the player.
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * @return the y position of the player.
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return the z position of the player.
+     */
+    public double getZ() {
+        return z;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The visible players of one world at one point in time. A snapshot never changes after it is created and holds the
+ * already serialized {@code getPlayers} message, so it can be sent to any number of clients from any thread. The
+ * players are also kept in a coarse grid so the players inside a client's viewport can be found quickly.
+ *
+ * @author Tyler Bucher
+ */
+public final class PlayerSnapshot {
+
+    /**
+     * The size in blocks of one cell of the player grid.
+     */
+    public static final int CELL_SIZE = 128;
+
+    /**
+     * The {@link java.util.UUID} of the world in string form.
+     */
+    @Nonnull
+    private final String worldId;
+
+    /**
+     * The visible players of the world.
+     */
+    @Nonnull
+    private final List<PlayerPosition> players;
+
+    /**
+     * The utf-8 encoded {@code getPlayers} message for this snapshot.
+     */
+    @Nonnull
+    private final byte[] message;
+
+    /**
+     * The visible players grouped into square cells of {@link #CELL_SIZE} blocks, keyed by {@link #getCellKey(int, int)}.
+     */
+    @Nonnull
+    private final Map<Long, List<PlayerPosition>> grid = new HashMap<>();
+
+    /**
+     * Creates a new {@link PlayerSnapshot} with the given information.
+     *
+     * @param worldId the {@link java.util.UUID} of the world in string form.
+     * @param players the visible players of the world.
+     * @param message the utf-8 encoded {@code getPlayers} message for this snapshot.
+     */
+    public PlayerSnapshot(@Nonnull final String worldId, @Nonnull final List<PlayerPosition> players, @Nonnull final byte[] message) {
+        this.worldId = worldId;
+        this.players = players;
+        this.message = message;
+        for (PlayerPosition player : players) {
+            grid.computeIfAbsent(getCellKey(Math.floorDiv((int) Math.floor(player.getX()), CELL_SIZE),
+                    Math.floorDiv((int) Math.floor(player.getZ()), CELL_SIZE)), k->new ArrayList<>()).add(player);
+        }
+    }
+
+    /**
+     * Gets the visible players inside an area.
+     *
+     * @param minX the smallest x block position of the area.
+     * @param minZ the smallest z block position of the area.
+     * @param maxX the largest x block position of the area.
+     * @param maxZ the largest z block position of the area.
+     * @return the visible players inside the area.
+     */
+    @Nonnull
+    public List<PlayerPosition> getPlayersIn(final long minX, final long minZ, final long maxX, final long maxZ) {
+        final List<PlayerPosition> result = new ArrayList<>();
+        final long minCellX = clampCell(Math.floorDiv(minX, CELL_SIZE));
+        final long minCellZ = clampCell(Math.floorDiv(minZ, CELL_SIZE));
+        final long maxCellX = clampCell(Math.floorDiv(maxX, CELL_SIZE));
+        final long maxCellZ = clampCell(Math.floorDiv(maxZ, CELL_SIZE));
+        // Walk the occupied cells instead when the area covers more cells than there are
+        if ((maxCellX - minCellX + 1.0d) * (maxCellZ - minCellZ + 1.0d) > grid.size()) {
+            for (List<PlayerPosition> cell : grid.values()) {
+                addPlayersIn(cell, minX, minZ, maxX, maxZ, result);
+            }
+            return result;
+        }
+        for (long cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (long cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                final List<PlayerPosition> cell = grid.get(getCellKey((int) cellX, (int) cellZ));
+                if (cell != null) {
+                    addPlayersIn(cell, minX, minZ, maxX, maxZ, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the players of a cell which are inside an area to a list.
+     *
+     * @param cell   the players of the cell.
+     * @param minX   the smallest x block position of the area.
+     * @param minZ   the smallest z block position of the area.
+     * @param maxX   the largest x block position of the area.
+     * @param maxZ   the largest z block position of the area.
+     * @param result the list to add the players to.
+     */
+    private static void addPlayersIn(@Nonnull final List<PlayerPosition> cell, final long minX, final long minZ,
+                                     final long maxX, final long maxZ, @Nonnull final List<PlayerPosition> result) {
+        for (PlayerPosition player : cell) {
+            if (player.getX() >= minX && player.getX() < maxX + 1.0d && player.getZ() >= minZ && player.getZ() < maxZ + 1.0d) {
+                result.add(player);
+            }
+        }
+    }
+
+    /**
+     * Limits a cell position to the range of cell positions a player can be in.
+     *
+     * @param cell the cell position.
+     * @return the cell position limited to the int range.
+     */
+    private static long clampCell(final long cell) {
+        return Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, cell));
+    }
+
+    /**
+     * @return the {@link java.util.UUID} of the world in string form.
+     */
+    @Nonnull
+    public String getWorldId() {
+        return worldId;
+    }
+
+    /**
+     * @return the visible players of the world.
+     */
+    @Nonnull
+    public List<PlayerPosition> getPlayers() {
+        return players;
+    }
+
+    /**
+     * @return the utf-8 encoded {@code getPlayers} message for this snapshot. The array must not be modified.
+     */
+    @Nonnull
+    public byte[] getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the key of a grid cell.
+     *
+     * @param cellX the x position of the cell.
+     * @param cellZ the z position of the cell.
+     * @return the key of the cell.
+     */
+    private static long getCellKey(final int cellX, final int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+}
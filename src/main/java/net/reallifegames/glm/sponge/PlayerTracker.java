@@ -0,0 +1,389 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge;
+
+import com.flowpowered.math.vector.Vector3i;
+import net.reallifegames.glm.sponge.server.BaseGlmServer;
+import net.reallifegames.glm.sponge.server.Capabilities;
+import net.reallifegames.glm.sponge.server.ClientSession;
+import net.reallifegames.glm.sponge.server.JsonMessages;
+import net.reallifegames.glm.sponge.server.PlayerDeltaEncoder;
+import net.reallifegames.glm.sponge.server.Viewport;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.scheduler.Task;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Samples the positions of all visible players on the main thread once per sample interval. The samples are turned
+ * into immutable {@link PlayerSnapshot}s off the main thread, serialized once per world and pushed to the clients
+ * viewing that world, or turned into a {@link PlayerDeltaEncoder delta} for clients which support it. Readers always
+ * see the last complete set of snapshots, the next set is built separately and swapped in once it is finished.
+ *
+ * @author Tyler Bucher
+ */
+public final class PlayerTracker {
+
+    /**
+     * The newest snapshot of every world, keyed by world id.
+     */
+    @Nonnull
+    private static volatile Map<String, PlayerSnapshot> snapshots = Collections.emptyMap();
+
+    /**
+     * The recent positions of every visible player, keyed by player id.
+     */
+    @Nonnull
+    private static final ConcurrentHashMap<String, PlayerTrail> trails = new ConcurrentHashMap<>();
+
+    /**
+     * The number of samples taken, used to drop samples which are published after a newer one.
+     */
+    private static long sampleCount;
+
+    /**
+     * The sample number of the published snapshots.
+     */
+    private static long publishedSample;
+
+    /**
+     * True once the first sample was published.
+     */
+    private static volatile boolean sampled;
+
+    /**
+     * The instance of the {@link GlMap} plugin.
+     */
+    private static GlMap pluginInstance;
+
+    /**
+     * Sponge task which samples the player positions.
+     */
+    private static Task sampleTask;
+
+    /**
+     * Initializes this class. Starts the sponge task which samples player positions.
+     *
+     * @param pluginInstance the instance of {@link GlMap}.
+     */
+    public static void init(@Nonnull final GlMap pluginInstance) {
+        PlayerTracker.pluginInstance = pluginInstance;
+        sampleTask = Task.builder().execute(PlayerTracker::sample)
+                .intervalTicks(Math.max(1, pluginInstance.getConfig().getPlayerSampleTicks()))
+                .name("GlM Player Sample Task").submit(pluginInstance);
+    }
+
+    /**
+     * Stop all processes of this class.
+     */
+    public static void stop() {
+        if (sampleTask != null) {
+            sampleTask.cancel();
+            sampleTask = null;
+        }
+        snapshots = Collections.emptyMap();
+        trails.clear();
+    }
+
+    /**
+     * Gets the newest snapshot of a world.
+     *
+     * @param worldId the {@link java.util.UUID} of the world in string form.
+     * @return the newest snapshot of the world or null if the world has not been sampled yet.
+     */
+    @Nullable
+    public static PlayerSnapshot getSnapshot(@Nonnull final String worldId) {
+        return snapshots.get(worldId);
+    }
+
+    /**
+     * @return true once the first sample was published. Until then no world has a snapshot.
+     */
+    public static boolean hasSampled() {
+        return sampled;
+    }
+
+    /**
+     * Creates a snapshot without any players, used for worlds which were not sampled yet.
+     *
+     * @param worldId the {@link java.util.UUID} of the world in string form.
+     * @return the empty snapshot of the world.
+     *
+     * @throws IOException if the message could not be written.
+     */
+    @Nonnull
+    public static PlayerSnapshot getEmptySnapshot(@Nonnull final String worldId) throws IOException {
+        return new PlayerSnapshot(worldId, Collections.emptyList(), writeMessage(worldId, Collections.emptyList()));
+    }
+
+    /**
+     * Reads the positions of all visible players in the worlds shown on the map. Must be called on the main thread.
+     */
+    private static void sample() {
+        final Map<String, List<PlayerPosition>> samples = new HashMap<>();
+        final List<String> worldList = pluginInstance.getConfig().getWorldList();
+        for (World world : Sponge.getServer().getWorlds()) {
+            if (!worldList.contains(world.getName())) {
+                continue;
+            }
+            final List<PlayerPosition> players = new ArrayList<>();
+            for (Player player : world.getPlayers()) {
+                if (!HiddenPlayers.isHidden(player.getUniqueId())) {
+                    final Location<World> location = player.getLocation();
+                    players.add(new PlayerPosition(player.getName(), player.getUniqueId().toString(),
+                            location.getX(), location.getY(), location.getZ()));
+                }
+            }
+            samples.put(world.getUniqueId().toString(), Collections.unmodifiableList(players));
+        }
+        // Serialize and push off the main thread
+        final long sample = ++sampleCount;
+        final long sampleTime = System.currentTimeMillis();
+        Task.builder().async().execute(()->publish(sample, sampleTime, samples)).name("GlM Player Publish Task").submit(pluginInstance);
+    }
+
+    /**
+     * Builds the snapshots for a set of samples, swaps them in and pushes them to the clients viewing each world.
+     *
+     * @param sample     the number of the sample.
+     * @param sampleTime the time in milliseconds the sample was taken.
+     * @param samples    the visible players of every world, keyed by world id.
+     */
+    private static synchronized void publish(final long sample, final long sampleTime,
+                                             @Nonnull final Map<String, List<PlayerPosition>> samples) {
+        // A newer sample was already published
+        if (sample <= publishedSample) {
+            return;
+        }
+        publishedSample = sample;
+        final Map<String, PlayerSnapshot> previousSnapshots = snapshots;
+        final Map<String, PlayerSnapshot> nextSnapshots = new HashMap<>();
+        for (Map.Entry<String, List<PlayerPosition>> entry : samples.entrySet()) {
+            try {
+                nextSnapshots.put(entry.getKey(), new PlayerSnapshot(entry.getKey(), entry.getValue(),
+                        writeMessage(entry.getKey(), entry.getValue())));
+            } catch (IOException e) {
+                pluginInstance.getLogger().error("Json error", e);
+            }
+        }
+        snapshots = Collections.unmodifiableMap(nextSnapshots);
+        sampled = true;
+        recordTrails(sampleTime, samples);
+        final BaseGlmServer baseGlmServer = pluginInstance.getBaseGlmServer();
+        if (baseGlmServer == null) {
+            return;
+        }
+        for (PlayerSnapshot snapshot : nextSnapshots.values()) {
+            // Empty worlds are only pushed once
+            final PlayerSnapshot previous = previousSnapshots.get(snapshot.getWorldId());
+            if (snapshot.getPlayers().isEmpty() && previous != null && previous.getPlayers().isEmpty()) {
+                continue;
+            }
+            baseGlmServer.broadcast(snapshot.getMessage(), session->
+                    session.getCapabilities().hasFeature(Capabilities.FEATURE_PLAYER_PUSH) &&
+                            !hasOwnPlayerMessage(session.getCapabilities()) &&
+                            session.isViewingWorld(snapshot.getWorldId()));
+        }
+        // Clients which receive deltas or only the players in their viewport get their own message
+        final int moveThreshold = Math.max(1, (int) Math.round(pluginInstance.getConfig().getPlayerMoveThreshold() *
+                PlayerDeltaEncoder.POSITION_SCALE));
+        final int keyframeInterval = Math.max(1, pluginInstance.getConfig().getPlayerKeyframeInterval());
+        for (ClientSession session : baseGlmServer.getSessions()) {
+            final Capabilities capabilities = session.getCapabilities();
+            final Viewport viewport = session.getViewport();
+            if (viewport == null || !capabilities.hasFeature(Capabilities.FEATURE_PLAYER_PUSH) ||
+                    !hasOwnPlayerMessage(capabilities)) {
+                continue;
+            }
+            final PlayerSnapshot snapshot = nextSnapshots.get(viewport.getWorldId());
+            if (snapshot == null) {
+                continue;
+            }
+            try {
+                final List<PlayerPosition> players = getVisiblePlayers(session, snapshot);
+                final byte[] message = capabilities.hasFeature(Capabilities.FEATURE_PLAYER_DELTA) ?
+                        session.getPlayerDeltaEncoder().update(snapshot.getWorldId(), players, moveThreshold, keyframeInterval) :
+                        writeMessage(snapshot.getWorldId(), players);
+                if (message != null) {
+                    JsonMessages.sendText(session.getConnection(), message);
+                }
+            } catch (IOException e) {
+                pluginInstance.getLogger().error("Json error", e);
+            }
+        }
+    }
+
+    /**
+     * @return the recent positions of every visible player.
+     */
+    @Nonnull
+    public static Collection<PlayerTrail> getTrails() {
+        return Collections.unmodifiableCollection(trails.values());
+    }
+
+    /**
+     * Records a sample in the trail of every player and forgets players who were not seen for too long or who are
+     * now hidden.
+     *
+     * @param sampleTime the time in milliseconds the sample was taken.
+     * @param samples    the visible players of every world, keyed by world id.
+     */
+    private static void recordTrails(final long sampleTime, @Nonnull final Map<String, List<PlayerPosition>> samples) {
+        final int trailLength = pluginInstance.getConfig().getPlayerTrailLength();
+        // Return because trails are disabled
+        if (trailLength <= 0) {
+            return;
+        }
+        for (Map.Entry<String, List<PlayerPosition>> entry : samples.entrySet()) {
+            for (PlayerPosition player : entry.getValue()) {
+                PlayerTrail trail = trails.get(player.getId());
+                // Start a new trail when the player changed worlds
+                if (trail == null || !trail.getWorldId().equals(entry.getKey())) {
+                    trail = new PlayerTrail(player.getId(), entry.getKey(), player.getName(), trailLength);
+                    trails.put(player.getId(), trail);
+                } else {
+                    trail.setName(player.getName());
+                }
+                trail.record(sampleTime, player.getX(), player.getY(), player.getZ());
+            }
+        }
+        final long oldestSeen = sampleTime - pluginInstance.getConfig().getPlayerTrailLifetime();
+        trails.values().removeIf(trail->trail.getLastSeen() < oldestSeen ||
+                HiddenPlayers.isHidden(UUID.fromString(trail.getPlayerId())));
+    }
+
+    /**
+     * Gets the {@code getPlayers} message for a client. Clients which asked for viewport scoped players get a message
+     * with only the players in their viewport, every other client gets the shared message of the snapshot.
+     *
+     * @param session  the session of the client or null if it is not known.
+     * @param snapshot the snapshot of the requested world.
+     * @return the utf-8 encoded message.
+     *
+     * @throws IOException if the message could not be written.
+     */
+    @Nonnull
+    public static byte[] getPlayersMessage(@Nullable final ClientSession session, @Nonnull final PlayerSnapshot snapshot) throws IOException {
+        if (session == null || !session.getCapabilities().hasFeature(Capabilities.FEATURE_PLAYER_VIEWPORT) ||
+                !session.isViewingWorld(snapshot.getWorldId())) {
+            return snapshot.getMessage();
+        }
+        return writeMessage(snapshot.getWorldId(), getVisiblePlayers(session, snapshot));
+    }
+
+    /**
+     * Gets the players a client should see. Clients which asked for viewport scoped players only see the players
+     * inside their viewport plus the configured margin.
+     *
+     * @param session  the session of the client.
+     * @param snapshot the snapshot of the world the client is viewing.
+     * @return the players the client should see.
+     */
+    @Nonnull
+    private static List<PlayerPosition> getVisiblePlayers(@Nonnull final ClientSession session, @Nonnull final PlayerSnapshot snapshot) {
+        final Viewport viewport = session.getViewport();
+        if (viewport == null || !session.getCapabilities().hasFeature(Capabilities.FEATURE_PLAYER_VIEWPORT)) {
+            return snapshot.getPlayers();
+        }
+        final long margin = pluginInstance.getConfig().getPlayerViewMargin();
+        final Vector3i chunkSize = Sponge.getServer().getChunkLayout().getChunkSize();
+        // Block positions are computed in long so large viewports and margins can not overflow
+        return snapshot.getPlayersIn(
+                (long) viewport.getMinX() * chunkSize.getX() - margin,
+                (long) viewport.getMinZ() * chunkSize.getZ() - margin,
+                ((long) viewport.getMaxX() + 1) * chunkSize.getX() - 1 + margin,
+                ((long) viewport.getMaxZ() + 1) * chunkSize.getZ() - 1 + margin
+        );
+    }
+
+    /**
+     * @param capabilities the capabilities of a client.
+     * @return true if the client gets its own player message instead of the shared one.
+     */
+    private static boolean hasOwnPlayerMessage(@Nonnull final Capabilities capabilities) {
+        return capabilities.hasFeature(Capabilities.FEATURE_PLAYER_DELTA) ||
+                capabilities.hasFeature(Capabilities.FEATURE_PLAYER_VIEWPORT);
+    }
+
+    /**
+     * Serializes the {@code getPlayers} message for a world.
+     *
+     * @param worldId the {@link java.util.UUID} of the world in string form.
+     * @param players the visible players of the world.
+     * @return the utf-8 encoded message.
+     *
+     * @throws IOException if the message could not be written.
+     */
+    @Nonnull
+    private static byte[] writeMessage(@Nonnull final String worldId, @Nonnull final List<PlayerPosition> players) throws IOException {
+        return JsonMessages.toBytes(jsonGenerator->{
+            // Start json object
+            jsonGenerator.writeStartObject();
+            // echo command back
+            jsonGenerator.writeStringField("cmd", "getPlayers");
+            // Start data block
+            jsonGenerator.writeObjectFieldStart("data");
+            // echo command interval
+            jsonGenerator.writeNumberField("commandInterval", pluginInstance.getConfig().getPlayerRequestTime());
+            // echo world id
+            jsonGenerator.writeStringField("worldId", worldId);
+            // start player array
+            jsonGenerator.writeArrayFieldStart("players");
+            // echo players
+            for (PlayerPosition player : players) {
+                // start general player object
+                jsonGenerator.writeStartObject();
+                jsonGenerator.writeStringField("name", player.getName());
+                jsonGenerator.writeStringField("id", player.getId());
+                jsonGenerator.writeObjectFieldStart("position");
+                jsonGenerator.writeNumberField("x", player.getX());
+                jsonGenerator.writeNumberField("y", player.getY());
+                jsonGenerator.writeNumberField("z", player.getZ());
+                // close position object
+                jsonGenerator.writeEndObject();
+                // close general object
+                jsonGenerator.writeEndObject();
+            }
+            // close player array
+            jsonGenerator.writeEndArray();
+            // close data object
+            jsonGenerator.writeEndObject();
+            // Close json object
+            jsonGenerator.writeEndObject();
+        });
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The recent sampled positions of one player in one world. The samples are kept in fixed size primitive arrays which
+ * are used as a ring buffer, so recording a sample never allocates. When the buffer is full the oldest sample is
+ * overwritten.
+ *
+ * @author Tyler Bucher
+ */
+public final class PlayerTrail {
+
+    /**
+     * The {@link java.util.UUID} of the player in string form.
+     */
+    @Nonnull
+    private final String playerId;
+
+    /**
+     * The {@link java.util.UUID} of the world in string form.
+     */
+    @Nonnull
+    private final String worldId;
+
+    /**
+     * The name of the player.
+     */
+    @Nonnull
+    private volatile String name;
+
+    /**
+     * The time in milliseconds of each sample.
+     */
+    @Nonnull
+    private final long[] times;
+
+    /**
+     * The x, y and z position of each sample.
+     */
+    @Nonnull
+    private final double[] positions;
+
+    /**
+     * The index the next sample is written to.
+     */
+    private int head;
+
+    /**
+     * The number of samples in the buffer.
+     */
+    private int size;
+
+    /**
+     * Creates a new empty trail.
+     *
+     * @param playerId the {@link java.util.UUID} of the player in string form.
+     * @param worldId  the {@link java.util.UUID} of the world in string form.
+     * @param name     the name of the player.
+     * @param capacity the maximum number of samples kept.
+     */
+    public PlayerTrail(@Nonnull final String playerId, @Nonnull final String worldId, @Nonnull final String name,
+                       final int capacity) {
+        this.playerId = playerId;
+        this.worldId = worldId;
+        this.name = name;
+        this.times = new long[capacity];
+        this.positions = new double[capacity * 3];
+    }
+
+    /**
+     * Records a sample. The oldest sample is overwritten when the trail is full.
+     *
+     * @param time the time of the sample in milliseconds.
+     * @param x    the x position of the player.
+     * @param y    the y position of the player.
+     * @param z    the z position of the player.
+     */
+    public synchronized void record(final long time, final double x, final double y, final double z) {
+        times[head] = time;
+        positions[head * 3] = x;
+        positions[head * 3 + 1] = y;
+        positions[head * 3 + 2] = z;
+        head = (head + 1) % times.length;
+        if (size < times.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Copies the newest samples, oldest first, into the given arrays.
+     *
+     * @param since        only samples taken after this time in milliseconds are copied.
+     * @param maxSamples   the maximum number of samples to copy.
+     * @param outTimes     receives the time of each sample, must hold at least {@code maxSamples} values.
+     * @param outPositions receives the x, y and z position of each sample, must hold at least {@code maxSamples * 3}
+     *                     values.
+     * @return the number of samples copied.
+     */
+    public synchronized int read(final long since, final int maxSamples, @Nonnull final long[] outTimes,
+                                 @Nonnull final double[] outPositions) {
+        // Count the newest samples which are recent enough
+        int count = 0;
+        while (count < size && count < maxSamples && times[getIndex(size - 1 - count)] > since) {
+            count++;
+        }
+        for (int i = 0; i < count; i++) {
+            final int index = getIndex(size - count + i);
+            outTimes[i] = times[index];
+            outPositions[i * 3] = positions[index * 3];
+            outPositions[i * 3 + 1] = positions[index * 3 + 1];
+            outPositions[i * 3 + 2] = positions[index * 3 + 2];
+        }
+        return count;
+    }
+
+    /**
+     * @return the time in milliseconds of the newest sample or 0 if the trail is empty.
+     */
+    public synchronized long getLastSeen() {
+        return size == 0 ? 0 : times[getIndex(size - 1)];
+    }
+
+    /**
+     * @return the {@link java.util.UUID} of the player in string form.
+     */
+    @Nonnull
+    public String getPlayerId() {
+        return playerId;
+    }
+
+    /**
+     * @return the {@link java.util.UUID} of the world in string form.
+     */
+    @Nonnull
+    public String getWorldId() {
+        return worldId;
+    }
+
+    /**
+     * @return the name of the player.
+     */
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name the name of the player.
+     */
+    public void setName(@Nonnull final String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the maximum number of samples kept.
+     */
+    public int getCapacity() {
+        return times.length;
+    }
+
+    /**
+     * Gets the buffer index of a sample.
+     *
+     * @param sample the sample number, 0 being the oldest sample in the buffer.
+     * @return the index of the sample in the arrays.
+     */
+    private int getIndex(final int sample) {
+        return (head - size + sample + times.length) % times.length;
+    }
+}
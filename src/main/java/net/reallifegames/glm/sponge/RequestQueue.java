@@ -37,10 +37,12 @@ import org.spongepowered.api.world.WorldBorder;
 import javax.annotation.Nonnull;
 import java.net.InetSocketAddress;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 /**
- * Holds information about a chunk for lists or queues.
+ * Holds information about a chunk for lists or queues. Callbacks can be added until the entry is finished, after that
+ * a new entry has to be queued for the chunk.
  *
  * @author Tyler Bucher
  */
@@ -62,7 +64,7 @@ class ChunkEntry {
      * The list of {@link ChunkRunnable}s to run when this {@link ChunkEntry} is processed.
      */
     @Nonnull
-    private final List<ChunkRunnable> callbackList;
+    private final List<ChunkRunnable> callbackList = new ArrayList<>();
 
     /**
      * The inet address of the client.
@@ -71,32 +73,23 @@ class ChunkEntry {
     private final InetSocketAddress inetAddress;
 
     /**
-     * Creates a new {@link ChunkEntry} with the given information.
-     *
-     * @param key      the key or position of the chunk.
-     * @param worldId  the {@link UUID} of the world in string form.
-     * @param callback the call back to create a list from for this {@link ChunkEntry}.
+     * States if the callbacks of this entry were handed out to be run or cancelled.
      */
-    ChunkEntry(@Nonnull final Vector3i key, @Nonnull final String worldId, @Nonnull final ChunkRunnable callback,
-               @Nonnull final InetSocketAddress inetAddress) {
-        this.key = key;
-        this.worldId = worldId;
-        this.callbackList = new ArrayList<>(Collections.singletonList(callback));
-        this.inetAddress = inetAddress;
-    }
+    private boolean finished;
 
     /**
      * Creates a new {@link ChunkEntry} with the given information.
      *
-     * @param key          the key or position of the chunk.
-     * @param worldId      the {@link UUID} of the world in string form.
-     * @param callbackList the list of callbacks to process.
+     * @param key         the key or position of the chunk.
+     * @param worldId     the {@link UUID} of the world in string form.
+     * @param callback    the first callback of this {@link ChunkEntry}.
+     * @param inetAddress the inet address of the client.
      */
-    ChunkEntry(@Nonnull final Vector3i key, @Nonnull final String worldId,
-               @Nonnull final List<ChunkRunnable> callbackList, @Nonnull final InetSocketAddress inetAddress) {
+    ChunkEntry(@Nonnull final Vector3i key, @Nonnull final String worldId, @Nonnull final ChunkRunnable callback,
+               @Nonnull final InetSocketAddress inetAddress) {
         this.key = key;
         this.worldId = worldId;
-        this.callbackList = callbackList;
+        this.callbackList.add(callback);
         this.inetAddress = inetAddress;
     }
 
@@ -117,19 +110,38 @@ class ChunkEntry {
     }
 
     /**
-     * @return the list of {@link ChunkRunnable}s to run when this {@link ChunkEntry} is processed.
+     * @return the inet address of the client.
      */
     @Nonnull
-    public List<ChunkRunnable> getCallbackList() {
-        return callbackList;
+    public InetSocketAddress getInetAddress() {
+        return inetAddress;
     }
 
     /**
-     * @return the inet address of the client.
+     * Adds a callback to this entry.
+     *
+     * @param callback the {@link ChunkRunnable} to call when the chunk is done loading or generating.
+     * @return true if the callback was added, false if this entry is already finished.
+     */
+    public synchronized boolean addCallback(@Nonnull final ChunkRunnable callback) {
+        if (finished) {
+            return false;
+        }
+        return callbackList.add(callback);
+    }
+
+    /**
+     * Finishes this entry. No callbacks can be added afterwards.
+     *
+     * @return the callbacks to run or cancel, empty if this entry was already finished.
      */
     @Nonnull
-    public InetSocketAddress getInetAddress() {
-        return inetAddress;
+    public synchronized List<ChunkRunnable> finish() {
+        if (finished) {
+            return Collections.emptyList();
+        }
+        finished = true;
+        return new ArrayList<>(callbackList);
     }
 }
 
@@ -183,7 +195,8 @@ class ChunkProcessEntry {
 /**
  * Handles requests from multiple clients via the {@link BaseGlmServer WebSocket server} with out duplicating requests for
  * chunk generation. It also helps to prevent the {@link GlMap} plugin from crashing the server due to too many chunk
- * generations during one tick.
+ * generations during one tick. Requests are only added from the main thread, and every entry is finished exactly once
+ * so each callback is either run or cancelled.
  *
  * @author Tyler Bucher
  */
@@ -201,6 +214,12 @@ public final class RequestQueue {
     @Nonnull
     private static final LinkedBlockingQueue<ChunkProcessEntry> processQueue = new LinkedBlockingQueue<>();
 
+    /**
+     * The unfinished entries keyed by world and chunk position.
+     */
+    @Nonnull
+    private static final ConcurrentHashMap<String, ChunkEntry> entries = new ConcurrentHashMap<>();
+
     /**
      * Should the {@link RequestQueue} continue to take new client requests.
      */
@@ -233,15 +252,24 @@ public final class RequestQueue {
                 final ChunkEntry entry = checkQueue.take();
                 // If the world exists pass off the information gathered from WorldStorage#doesChunkExist
                 // and create new item for the processQueue
-                Sponge.getServer().getWorld(UUID.fromString(entry.getWorldId())).ifPresent(world->
-                        world.getWorldStorage().doesChunkExist(entry.getKey()).thenAccept(chunkStatus->
-                                // Only allow generation if config says so
-                                processQueue.offer(new ChunkProcessEntry(
-                                        pluginInstance.getConfig().canGenerateWorld() ? chunkStatus : false,
-                                        entry
-                                ))
-                        )
-                );
+                final Optional<World> optionalWorld = Sponge.getServer().getWorld(UUID.fromString(entry.getWorldId()));
+                if (optionalWorld.isPresent()) {
+                    optionalWorld.get().getWorldStorage().doesChunkExist(entry.getKey()).thenAccept(chunkStatus->
+                            // Only allow generation if config says so
+                            processQueue.offer(new ChunkProcessEntry(
+                                    pluginInstance.getConfig().canGenerateWorld() ? chunkStatus : false,
+                                    entry
+                            ))
+                    ).exceptionally(throwable->{
+                        RequestQueue.cancel(entry);
+                        return null;
+                    });
+                } else {
+                    RequestQueue.cancel(entry);
+                }
+            } catch (RuntimeException e) {
+                // Requests of the entry are completed by the chunk request timeout
+                pluginInstance.getLogger().error("Error checking chunk: ", e);
             } catch (InterruptedException e) {
                 // This error should almost always be thrown because of how we close the thread.
                 final GameState state = Sponge.getGame().getState();
@@ -280,27 +308,13 @@ public final class RequestQueue {
             if (entry != null) {
                 Sponge.getCauseStackManager().pushCause(pluginInstance.getChunkLoadCause());
                 do {
-                    Optional<World> optionalWorld = Sponge.getServer().getWorld(UUID.fromString(entry.getChunkEntry().getWorldId()));
-                    // Only load chunk if world is present
-                    if (optionalWorld.isPresent()) {
-                        final World world = optionalWorld.get();
-                        // Create final var for lambda statement
-                        final ChunkProcessEntry entry1 = entry;
-                        // Load chunk asynchronously
-                        if (pluginInstance.getConfig().shouldRespectWorldBorder()) {
-                            final Optional<WorldBorder> optionalWorldBorder = pluginInstance.getWorldBorderMap().get(world.getUniqueId());
-                            if(optionalWorldBorder.isPresent()) {
-                                final WorldBorder border = optionalWorldBorder.get();
-                                if (!RequestQueue.containsPosition(entry.getChunkEntry().getKey(), border.getCenter(), border.getDiameter())) {
-                                    // Skip request because not in world border.
-                                    entry = processQueue.poll();
-                                    continue;
-                                }
-                            }
-                        }
-                        world.loadChunk(entry.getChunkEntry().getKey(), !entry.getChunkExists()).ifPresent(chunk->{
-                            entry1.getChunkEntry().getCallbackList().forEach(chunkRunnable->chunkRunnable.run(chunk));
-                        });
+                    try {
+                        RequestQueue.process(entry);
+                    } catch (RuntimeException e) {
+                        pluginInstance.getLogger().error("Error loading chunk: ", e);
+                    } finally {
+                        // Callbacks which did not run are told the chunk will not be loaded
+                        RequestQueue.cancel(entry.getChunkEntry());
                     }
                     // Get next item
                     entry = processQueue.poll();
@@ -311,6 +325,35 @@ public final class RequestQueue {
         }).intervalTicks(pluginInstance.getConfig().getTickInterval()).name("GlM Chunk Generation Task").submit(pluginInstance);
     }
 
+    /**
+     * Loads or generates the chunk of an entry and runs its callbacks. This should be run on the main thread.
+     *
+     * @param entry the entry to process.
+     */
+    private static void process(@Nonnull final ChunkProcessEntry entry) {
+        final Optional<World> optionalWorld = Sponge.getServer().getWorld(UUID.fromString(entry.getChunkEntry().getWorldId()));
+        // Only load chunk if world is present
+        if (!optionalWorld.isPresent()) {
+            return;
+        }
+        final World world = optionalWorld.get();
+        if (pluginInstance.getConfig().shouldRespectWorldBorder()) {
+            final Optional<WorldBorder> optionalWorldBorder = pluginInstance.getWorldBorderMap()
+                    .getOrDefault(world.getUniqueId(), Optional.empty());
+            if (optionalWorldBorder.isPresent()) {
+                final WorldBorder border = optionalWorldBorder.get();
+                if (!RequestQueue.containsPosition(entry.getChunkEntry().getKey(), border.getCenter(), border.getDiameter())) {
+                    // Skip request because not in world border.
+                    return;
+                }
+            }
+        }
+        final Optional<Chunk> optionalChunk = world.loadChunk(entry.getChunkEntry().getKey(), !entry.getChunkExists());
+        if (optionalChunk.isPresent()) {
+            RequestQueue.finish(entry.getChunkEntry()).forEach(chunkRunnable->chunkRunnable.run(optionalChunk.get()));
+        }
+    }
+
     /**
      * Stop all processes of this class related to chunk processing.
      */
@@ -325,11 +368,13 @@ public final class RequestQueue {
         queueExecutor.interrupt();
         // Cancel sponge task
         generationTask.cancel();
+        // Nothing will be loaded anymore
+        entries.values().forEach(RequestQueue::cancel);
     }
 
     /**
      * Attempts to create a new requests for chunk generation or loading. If a request all ready exists, the callback
-     * will be added to the list for processing for the requested chunk.
+     * will be added to the list for processing for the requested chunk. This must be called on the main thread.
      *
      * @param chunkPosition the position of the chunk to load or generate.
      * @param worldId       the {@link UUID} of the world in string form.
@@ -343,31 +388,59 @@ public final class RequestQueue {
         if (!pluginInstance.getConfig().canLoadWorld()) {
             return false;
         }
-        ChunkEntry item = null;
-        // Check to make sure we don't add the same client multiple times
-        for (ChunkEntry entry : checkQueue) {
-            // Check if queue has a entry for the given chunk position
-            if (entry.getKey().equals(chunkPosition)) {
-                if (entry.getInetAddress().equals(inetAddress)) {
-                    return false;
-                }
-                item = entry;
-                break;
-            }
-        }
-        // Check to make sure we don't add the same client multiple times
-        for (ChunkProcessEntry entry : processQueue) {
-            if (entry.getChunkEntry().getKey().equals(chunkPosition) &&
-                    entry.getChunkEntry().getInetAddress().equals(inetAddress)) {
+        final String key = getKey(worldId, chunkPosition);
+        final ChunkEntry item = entries.get(key);
+        if (item != null) {
+            // Check to make sure we don't add the same client multiple times
+            if (item.getInetAddress().equals(inetAddress)) {
                 return false;
             }
+            // A finished entry is replaced with a new one below
+            if (item.addCallback(callback)) {
+                return true;
+            }
         }
-        // If an entry does not exists create it, otherwise add callback to list for entry
-        if (item == null) {
-            return checkQueue.offer(new ChunkEntry(chunkPosition, worldId, callback, inetAddress));
-        } else {
-            return item.getCallbackList().add(callback);
+        final ChunkEntry entry = new ChunkEntry(chunkPosition, worldId, callback, inetAddress);
+        entries.put(key, entry);
+        if (!checkQueue.offer(entry)) {
+            entries.remove(key, entry);
+            return false;
         }
+        return true;
+    }
+
+    /**
+     * Finishes an entry and removes it from the unfinished entries.
+     *
+     * @param entry the entry to finish.
+     * @return the callbacks of the entry, empty if it was already finished.
+     */
+    @Nonnull
+    private static List<ChunkRunnable> finish(@Nonnull final ChunkEntry entry) {
+        entries.remove(getKey(entry.getWorldId(), entry.getKey()), entry);
+        return entry.finish();
+    }
+
+    /**
+     * Lets every callback of an entry know its chunk will not be loaded. Entries which are already finished are not
+     * affected.
+     *
+     * @param entry the entry which is being dropped.
+     */
+    private static void cancel(@Nonnull final ChunkEntry entry) {
+        finish(entry).forEach(ChunkRunnable::cancel);
+    }
+
+    /**
+     * Creates the key of the entry for a chunk.
+     *
+     * @param worldId       the {@link UUID} of the world in string form.
+     * @param chunkPosition the position of the chunk.
+     * @return the key of the entry.
+     */
+    @Nonnull
+    private static String getKey(@Nonnull final String worldId, @Nonnull final Vector3i chunkPosition) {
+        return worldId + ':' + chunkPosition.getX() + ':' + chunkPosition.getZ();
     }
 
     /**
@@ -35,7 +35,8 @@ import org.spongepowered.api.world.World;
 import javax.annotation.Nonnull;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Helps with getting info from server and transforming it into data to be sent to the client.
@@ -44,6 +45,27 @@ import java.util.HashMap;
  */
 public final class WorldModuleSponge extends WorldModule {
 
+    /**
+     * Creates the chunk cache for a world. The cache for a world is shared between the main thread and the chunk
+     * worker threads so this should be called for every world before clients are able to make requests.
+     *
+     * @param worldId the {@link UUID} of the world in string form.
+     */
+    public static void initializeWorldCache(@Nonnull final String worldId) {
+        cache.putIfAbsent(worldId, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Checks if a {@link GlmChunk} has outlived the configured cache lifetime.
+     *
+     * @param glChunk        the chunk to check.
+     * @param pluginInstance the plugin instance.
+     * @return true if the chunk should be regenerated false otherwise.
+     */
+    public static boolean isExpired(@Nonnull final GlmChunk glChunk, @Nonnull final GlMap pluginInstance) {
+        return (System.currentTimeMillis() - glChunk.getChunkGenerationTime()) >= pluginInstance.getConfig().getGlChunkCacheLifetime();
+    }
+
     /**
      * Safely updates the cache and sql server.
      *
@@ -56,35 +78,19 @@ public final class WorldModuleSponge extends WorldModule {
                                    boolean checked) {
         // Get world and chunk ids
         final String worldId = world.getUniqueId().toString();
-        final Vector3i position = chunk.getPosition();
-        final String chunkId = getChunkCacheId(position);
+        final String chunkId = getChunkCacheId(chunk.getPosition());
         // Add world if absent
-        cache.computeIfAbsent(worldId, k->new HashMap<>());
-        GlmChunk glChunk = cache.get(worldId).get(chunkId);
-        // Check if chunk is in cache
-        if (checked && glChunk != null) {
-            // If current chunk time is less than expire time return it.
-            if ((System.currentTimeMillis() - glChunk.getChunkGenerationTime()) < pluginInstance.getConfig().getGlChunkCacheLifetime()) {
-                return;
-            }
-        }
-        // Generate chunk
-        glChunk = createGlChunk(chunk);
-        // Update sql server
-        try (Connection connection = pluginInstance.getDataSource().getConnection()) {
-            SqlModule.updateGlChunk(connection, worldId, position.getX(), position.getZ(), glChunk);
-        } catch (SQLException e) {
-            pluginInstance.getLogger().error("Error updating sql server chunk: ", e);
-        }
-        // add chunk to cache if possible
-        if (pluginInstance.getConfig().isCacheLimited()) {
-            // Check if there is room in the cache
-            if (cache.get(worldId).size() < pluginInstance.getConfig().getMaximumChunksInCache()) {
-                cache.get(worldId).put(chunkId, glChunk);
-            }
-        } else {
-            cache.get(worldId).put(chunkId, glChunk);
+        cache.computeIfAbsent(worldId, k->new ConcurrentHashMap<>());
+        final GlmChunk glChunk = cache.get(worldId).get(chunkId);
+        // Check if chunk is in cache and if current chunk time is less than expire time return.
+        if (checked && glChunk != null && !isExpired(glChunk, pluginInstance)) {
+            return;
         }
+        // Generate and store chunk
+        final GlmChunk newChunk = createGlChunk(chunk);
+        storeGlChunk(worldId, chunk.getPosition(), newChunk, pluginInstance);
+        // Let clients viewing this chunk know it changed
+        ChunkUpdatePusher.markDirty(worldId, chunk.getPosition(), newChunk);
     }
 
     /**
@@ -99,27 +105,42 @@ public final class WorldModuleSponge extends WorldModule {
     public static GlmChunk getGlChunk(@Nonnull final World world, @Nonnull final Chunk chunk, @Nonnull final GlMap pluginInstance) {
         // Get world and chunk ids
         final String worldId = world.getUniqueId().toString();
-        final Vector3i position = chunk.getPosition();
-        final String chunkId = getChunkCacheId(position);
+        final String chunkId = getChunkCacheId(chunk.getPosition());
         // Add world if absent
-        cache.computeIfAbsent(worldId, k->new HashMap<>());
+        cache.computeIfAbsent(worldId, k->new ConcurrentHashMap<>());
         GlmChunk glChunk = cache.get(worldId).get(chunkId);
-        // Check if chunk is in cache
-        if (glChunk != null) {
-            // If current chunk time is less than expire time return it.
-            if ((System.currentTimeMillis() - glChunk.getChunkGenerationTime()) < pluginInstance.getConfig().getGlChunkCacheLifetime()) {
-                return glChunk;
-            }
+        // Check if chunk is in cache and if current chunk time is less than expire time return it.
+        if (glChunk != null && !isExpired(glChunk, pluginInstance)) {
+            return glChunk;
         }
-        // Generate chunk
+        // Generate and store chunk
         glChunk = createGlChunk(chunk);
+        storeGlChunk(worldId, chunk.getPosition(), glChunk, pluginInstance);
+        // return chunk
+        return glChunk;
+    }
+
+    /**
+     * Adds a newly generated {@link GlmChunk} to the cache if possible and writes it to the sql server off of the
+     * calling thread.
+     *
+     * @param worldId        the {@link UUID} of the world in string form.
+     * @param position       the position of the chunk.
+     * @param glChunk        the newly generated chunk.
+     * @param pluginInstance the plugin instance.
+     */
+    private static void storeGlChunk(@Nonnull final String worldId, @Nonnull final Vector3i position,
+                                     @Nonnull final GlmChunk glChunk, @Nonnull final GlMap pluginInstance) {
         // Update sql server
-        try (Connection connection = pluginInstance.getDataSource().getConnection()) {
-            SqlModule.updateGlChunk(connection, worldId, position.getX(), position.getZ(), glChunk);
-        } catch (SQLException e) {
-            pluginInstance.getLogger().error("Error updating sql server chunk: ", e);
-        }
+        ChunkPipeline.executeSqlWrite(()->{
+            try (Connection connection = pluginInstance.getDataSource().getConnection()) {
+                SqlModule.updateGlChunk(connection, worldId, position.getX(), position.getZ(), glChunk);
+            } catch (SQLException e) {
+                pluginInstance.getLogger().error("Error updating sql server chunk: ", e);
+            }
+        });
         // add chunk to cache if possible
+        final String chunkId = getChunkCacheId(position);
         if (pluginInstance.getConfig().isCacheLimited()) {
             // Check if there is room in the cache
             if (cache.get(worldId).size() < pluginInstance.getConfig().getMaximumChunksInCache()) {
@@ -128,8 +149,6 @@ public final class WorldModuleSponge extends WorldModule {
         } else {
             cache.get(worldId).put(chunkId, glChunk);
         }
-        // return chunk
-        return glChunk;
     }
 
     /**
@@ -24,7 +24,12 @@
 package net.reallifegames.glm.sponge.commands;
 
 import net.reallifegames.glm.module.SqlModule;
+import net.reallifegames.glm.sponge.BanIndex;
+import net.reallifegames.glm.sponge.ChunkPipeline;
+import net.reallifegames.glm.sponge.ChunkUpdatePusher;
 import net.reallifegames.glm.sponge.GlMap;
+import net.reallifegames.glm.sponge.HiddenPlayers;
+import net.reallifegames.glm.sponge.PlayerTracker;
 import net.reallifegames.glm.sponge.RequestQueue;
 import net.reallifegames.glm.sponge.WorldModuleSponge;
 import org.spongepowered.api.Sponge;
@@ -74,6 +79,8 @@ public class DebugCommand extends CoreCommand {
                     .append(Text.of(TextColors.GREEN, "    Total Cache Size: " + WorldModuleSponge.getTotalCacheSize())).append(Text.NEW_LINE)
                     .append(Text.of(TextColors.GREEN, "    Total Sql Size: " + SqlModule.countTotalRows(connection))).append(Text.NEW_LINE)
                     .append(Text.of(TextColors.GREEN, "    Chunk queue Size: " + RequestQueue.getCurrentQueueSize())).append(Text.NEW_LINE)
+                    .append(Text.of(TextColors.GREEN, "    In flight chunks: " + ChunkPipeline.getInFlightChunkCount())).append(Text.NEW_LINE)
+                    .append(Text.of(TextColors.GREEN, "    Chunks waiting to be pushed: " + ChunkUpdatePusher.getDirtyChunkCount())).append(Text.NEW_LINE)
                     .append(Text.of(TextColors.GREEN, "    World Cache:")).append(Text.NEW_LINE);
             // Per world cache information
             this.pluginInstance.getConfig().getWorldList().forEach(worldName->
@@ -98,7 +105,15 @@ public class DebugCommand extends CoreCommand {
             // Web socket server
             builder.append(Text.of(TextColors.GOLD, TextStyles.UNDERLINE, "WebSocket server:")).append(Text.NEW_LINE)
                     .append(Text.of(TextColors.GREEN, "    Current connections: " + pluginInstance.getBaseGlmServer().getCurrentConnections()))
-                    .append(Text.NEW_LINE);
+                    .append(Text.NEW_LINE)
+                    .append(Text.of(TextColors.GREEN, "    Client sessions: " + pluginInstance.getBaseGlmServer().getSessions().size())).append(Text.NEW_LINE)
+                    .append(Text.of(TextColors.GREEN, "    Connected ip addresses: " + pluginInstance.getBaseGlmServer().getConnectedIpCount())).append(Text.NEW_LINE)
+                    .append(Text.of(TextColors.GREEN, "    Ip history entries: " + pluginInstance.getBaseGlmServer().getIpHistorySize())).append(Text.NEW_LINE)
+                    .append(Text.of(TextColors.GREEN, "    Banned hosts: " + BanIndex.getBanCount())).append(Text.NEW_LINE);
+            // Player tracking
+            builder.append(Text.of(TextColors.GOLD, TextStyles.UNDERLINE, "Player tracking:")).append(Text.NEW_LINE)
+                    .append(Text.of(TextColors.GREEN, "    Hidden players: " + HiddenPlayers.getHiddenCount())).append(Text.NEW_LINE)
+                    .append(Text.of(TextColors.GREEN, "    Player trails: " + PlayerTracker.getTrails().size())).append(Text.NEW_LINE);
             src.sendMessage(builder.build());
             return CommandResult.success();
         } catch (SQLException e) {
@@ -24,6 +24,7 @@
 package net.reallifegames.glm.sponge.commands;
 
 import net.reallifegames.glm.sponge.GlMap;
+import net.reallifegames.glm.sponge.HiddenPlayers;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.command.args.CommandContext;
@@ -60,13 +61,15 @@ public class ToggleCommand extends CoreCommand {
         }
         // Get player
         final Player player = (Player) src;
-        if (player.hasPermission("glm.map.hide")) {
+        if (player.hasPermission(HiddenPlayers.HIDE_PERMISSION)) {
             // Remove permission from player
-            player.getSubjectData().setPermission(player.getActiveContexts(), "glm.map.hide", Tristate.UNDEFINED);
+            player.getSubjectData().setPermission(player.getActiveContexts(), HiddenPlayers.HIDE_PERMISSION, Tristate.UNDEFINED);
+            HiddenPlayers.setHidden(player.getUniqueId(), false);
             src.sendMessage(Text.of(TextColors.GREEN, "You are now visible to the web map."));
         } else {
             // Add permission to player
-            player.getSubjectData().setPermission(player.getActiveContexts(), "glm.map.hide", Tristate.TRUE);
+            player.getSubjectData().setPermission(player.getActiveContexts(), HiddenPlayers.HIDE_PERMISSION, Tristate.TRUE);
+            HiddenPlayers.setHidden(player.getUniqueId(), true);
             src.sendMessage(Text.of(TextColors.GREEN, "You are now hidden from the web map."));
         }
         return CommandResult.success();
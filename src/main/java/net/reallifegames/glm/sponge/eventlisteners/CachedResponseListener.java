@@ -0,0 +1,113 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.eventlisteners;
+
+import com.flowpowered.math.vector.Vector3i;
+import net.reallifegames.glm.sponge.GlMap;
+import net.reallifegames.glm.sponge.server.CachedResponse;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.Order;
+import org.spongepowered.api.event.game.GameReloadEvent;
+import org.spongepowered.api.event.game.state.GameStartedServerEvent;
+import org.spongepowered.api.event.world.ChangeWorldBorderEvent;
+import org.spongepowered.api.event.world.LoadWorldEvent;
+import org.spongepowered.api.event.world.UnloadWorldEvent;
+import org.spongepowered.api.scheduler.Task;
+import org.spongepowered.api.world.World;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Invalidates the {@link CachedResponse cached responses} when the data they were built from changes. Responses which
+ * read game state are rebuilt right away, which is why every invalidation happens on the main thread. Sponge has no
+ * event for spawn changes so world spawns are checked on a timer.
+ *
+ * @author Tyler Bucher
+ */
+public class CachedResponseListener extends CoreListener {
+
+    /**
+     * The spawn position of every available world from the last check.
+     */
+    @Nonnull
+    private final Map<UUID, Vector3i> spawnPositions = new HashMap<>();
+
+    /**
+     * Constructs a new {@link CoreListener}.
+     *
+     * @param pluginInstance the {@link GlMap} instance.
+     */
+    CachedResponseListener(@Nonnull final GlMap pluginInstance) {
+        super(pluginInstance);
+    }
+
+    @Listener
+    public void onServerStarted(@Nonnull final GameStartedServerEvent event) {
+        // Check for spawn changes every 5 seconds
+        Task.builder().execute(this::checkSpawns).intervalTicks(100).name("GlM Spawn Check Task").submit(pluginInstance);
+    }
+
+    @Listener (order = Order.POST)
+    public void onReload(@Nonnull final GameReloadEvent event) {
+        CachedResponse.invalidateAll();
+    }
+
+    @Listener (order = Order.POST)
+    public void onWorldLoad(@Nonnull final LoadWorldEvent event) {
+        CachedResponse.invalidateAll();
+    }
+
+    @Listener (order = Order.POST)
+    public void onWorldUnload(@Nonnull final UnloadWorldEvent event) {
+        CachedResponse.invalidateAll();
+    }
+
+    @Listener (order = Order.POST)
+    public void onWorldBorderChange(@Nonnull final ChangeWorldBorderEvent.TargetWorld event) {
+        CachedResponse.invalidateAll();
+    }
+
+    /**
+     * Invalidates the cached responses if the spawn of an available world moved since the last check.
+     */
+    private void checkSpawns() {
+        boolean changed = false;
+        for (World world : Sponge.getServer().getWorlds()) {
+            if (pluginInstance.getConfig().getWorldList().contains(world.getName())) {
+                final Vector3i spawnPosition = world.getProperties().getSpawnPosition();
+                final Vector3i oldSpawnPosition = spawnPositions.put(world.getUniqueId(), spawnPosition);
+                if (oldSpawnPosition != null && !oldSpawnPosition.equals(spawnPosition)) {
+                    changed = true;
+                }
+            }
+        }
+        if (changed) {
+            CachedResponse.invalidateAll();
+        }
+    }
+}
@@ -45,5 +45,8 @@ public final class EventRegistrar {
         final EventManager eventManager = Sponge.getEventManager();
         eventManager.registerListeners(pluginInstance, new PopulateListener(pluginInstance));
         eventManager.registerListeners(pluginInstance, new ChunkLoadListener(pluginInstance));
+        eventManager.registerListeners(pluginInstance, new CachedResponseListener(pluginInstance));
+        eventManager.registerListeners(pluginInstance, new WorldBorderListener(pluginInstance));
+        eventManager.registerListeners(pluginInstance, new PlayerVisibilityListener(pluginInstance));
     }
 }
@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.eventlisteners;
+
+import net.reallifegames.glm.sponge.GlMap;
+import net.reallifegames.glm.sponge.HiddenPlayers;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.Order;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Keeps the {@link HiddenPlayers} cache up to date when players join or leave.
+ *
+ * @author Tyler Bucher
+ */
+public class PlayerVisibilityListener extends CoreListener {
+
+    /**
+     * Constructs a new {@link CoreListener}.
+     *
+     * @param pluginInstance the {@link GlMap} instance.
+     */
+    PlayerVisibilityListener(@Nonnull final GlMap pluginInstance) {
+        super(pluginInstance);
+    }
+
+    /**
+     * Reads the visibility of a player who joined.
+     *
+     * @param event the join event.
+     */
+    @Listener(order = Order.POST)
+    public void onClientConnectionEventJoin(@Nonnull final ClientConnectionEvent.Join event) {
+        HiddenPlayers.update(event.getTargetEntity());
+    }
+
+    /**
+     * Removes a player who left.
+     *
+     * @param event the disconnect event.
+     */
+    @Listener(order = Order.POST)
+    public void onClientConnectionEventDisconnect(@Nonnull final ClientConnectionEvent.Disconnect event) {
+        HiddenPlayers.remove(event.getTargetEntity().getUniqueId());
+    }
+}
@@ -23,10 +23,10 @@
  */
 package net.reallifegames.glm.sponge.eventlisteners;
 
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.flowpowered.math.vector.Vector3d;
 import net.reallifegames.glm.sponge.GlMap;
+import net.reallifegames.glm.sponge.server.BaseGlmServer;
+import net.reallifegames.glm.sponge.server.JsonMessages;
 import org.spongepowered.api.event.Listener;
 import org.spongepowered.api.event.world.ChangeWorldBorderEvent;
 import org.spongepowered.api.world.World;
@@ -34,7 +34,6 @@ import org.spongepowered.api.world.WorldBorder;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.Optional;
 
 /**
@@ -61,10 +60,9 @@ public class WorldBorderListener extends CoreListener {
         if (pluginInstance.getConfig().getWorldList().contains(world.getName())) {
             final Optional<WorldBorder> optionalWorldBorder = event.getNewBorder();
             pluginInstance.getWorldBorderMap().put(world.getUniqueId(), event.getNewBorder());
-            pluginInstance.getBaseGlmServer().getConnections().forEach(webSocket->{
-                try {
-                    StringWriter stringWriter = new StringWriter();
-                    JsonGenerator jsonGenerator = new JsonFactory().createGenerator(stringWriter);
+            try {
+                // Serialize the update once for every client
+                final byte[] message = JsonMessages.toBytes(jsonGenerator->{
                     // Start json object
                     jsonGenerator.writeStartObject();
                     // echo command back
@@ -92,13 +90,14 @@ public class WorldBorderListener extends CoreListener {
                     jsonGenerator.writeEndObject();
                     // Close json object
                     jsonGenerator.writeEndObject();
-                    // Flush data and send to client
-                    jsonGenerator.flush();
-                    webSocket.send(stringWriter.toString());
-                } catch (IOException e1) {
-                    pluginInstance.getLogger().error("Json error", e1);
+                });
+                final BaseGlmServer baseGlmServer = pluginInstance.getBaseGlmServer();
+                if (baseGlmServer != null) {
+                    baseGlmServer.broadcast(message);
                 }
-            });
+            } catch (IOException e1) {
+                pluginInstance.getLogger().error("Json error", e1);
+            }
         }
     }
 }
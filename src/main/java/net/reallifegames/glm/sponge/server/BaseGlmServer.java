@@ -23,26 +23,104 @@
  */
 package net.reallifegames.glm.sponge.server;
 
+import net.reallifegames.glm.api.server.WsServerCommand;
 import net.reallifegames.glm.server.GlmServer;
+import net.reallifegames.glm.sponge.BanIndex;
 import net.reallifegames.glm.sponge.GlMap;
 import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.handshake.ServerHandshakeBuilder;
+import org.spongepowered.api.scheduler.Task;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 /**
- * The server to talk to the gl map clients.
+ * The server to talk to the gl map clients. Messages for the built in commands are read with the streaming
+ * {@link CommandRequest} instead of a full json tree. Commands which carry a {@code requestId}, from clients which
+ * negotiated the {@code requestId} feature, are run on a small pool and may be answered out of order, every response to
+ * them echoes the request id.
  *
  * @author Tyler Bucher
  */
 public class BaseGlmServer extends GlmServer {
 
+    /**
+     * The close code which tells a client to try again later. Java-WebSocket 1.3.7 has no constant for it.
+     */
+    private static final int TRY_AGAIN_LATER = 1013;
+
     /**
      * The {@link GlMap} instance.
      */
     @Nonnull
     private final GlMap pluginInstance;
 
+    /**
+     * The state of every open client connection.
+     */
+    @Nonnull
+    private final ConcurrentMap<WebSocket, ClientSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * The command registrar of this server.
+     */
+    @Nonnull
+    private final CommandRegistrarWk registrar;
+
+    /**
+     * The state of each client ip address which outlives single connections.
+     */
+    @Nonnull
+    private final IpHistory ipHistory;
+
+    /**
+     * Sponge task which forgets old ip addresses.
+     */
+    @Nullable
+    private Task expireTask;
+
+    /**
+     * The number of open connections from each client ip address.
+     */
+    @Nonnull
+    private final ConcurrentMap<InetAddress, AtomicInteger> ipConnections = new ConcurrentHashMap<>();
+
+    /**
+     * Limits how fast new connections are admitted.
+     */
+    @Nullable
+    private final TokenBucket handshakeBucket;
+
+    /**
+     * Runs commands which carry a request id.
+     */
+    @Nonnull
+    private final ExecutorService commandPool;
+
+    /**
+     * The maximum number of commands with a request id one client may have waiting or running.
+     */
+    private final int maxRequestsInFlight;
+
     /**
      * Creates a new Gl server.
      *
@@ -52,6 +130,202 @@ public class BaseGlmServer extends GlmServer {
     public BaseGlmServer(@Nonnull final InetSocketAddress address, @Nonnull final GlMap pluginInstance) {
         super(address, new CommandRegistrarWk(pluginInstance));
         this.pluginInstance = pluginInstance;
+        this.registrar = (CommandRegistrarWk) getRegistrar();
+        this.maxRequestsInFlight = Math.max(1, pluginInstance.getConfig().getMaxRequestsInFlight());
+        this.ipHistory = new IpHistory(pluginInstance.getConfig().getIpRateLimit(), pluginInstance.getConfig().getIpHistoryLifetime());
+        final RateLimit handshakeRateLimit = pluginInstance.getConfig().getHandshakeRateLimit();
+        this.handshakeBucket = handshakeRateLimit.isEnabled() ? handshakeRateLimit.createBucket() : null;
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.commandPool = Executors.newFixedThreadPool(Math.max(1, pluginInstance.getConfig().getCommandWorkerThreads()),
+                runnable->{
+                    final Thread thread = new Thread(runnable, "Gl Map command worker " + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Override
+    public ServerHandshakeBuilder onWebsocketHandshakeReceivedAsServer(@Nonnull final WebSocket conn, @Nonnull final Draft draft,
+                                                                       @Nonnull final ClientHandshake request) throws InvalidDataException {
+        // Reject banned hosts before they can send any command
+        final InetSocketAddress address = conn.getRemoteSocketAddress();
+        if (address != null && BanIndex.isBanned(address.getHostString())) {
+            throw new InvalidDataException(CloseFrame.POLICY_VALIDATION, "Banned");
+        }
+        // Refuse clients over the connection limits before the connection is opened
+        if (sessions.size() >= pluginInstance.getConfig().getMaxConnections()) {
+            throw new InvalidDataException(TRY_AGAIN_LATER, "Too many connections");
+        }
+        if (address != null && getIpConnectionCount(address.getAddress()) >= pluginInstance.getConfig().getMaxConnectionsPerIp()) {
+            throw new InvalidDataException(CloseFrame.POLICY_VALIDATION, "Too many connections");
+        }
+        return super.onWebsocketHandshakeReceivedAsServer(conn, draft, request);
+    }
+
+    @Override
+    public void onOpen(@Nonnull final WebSocket conn, @Nonnull final ClientHandshake handshake) {
+        // Send clients away with a jittered retry time when connections arrive faster than the handshake rate
+        if (handshakeBucket != null && !handshakeBucket.tryAcquire()) {
+            final long retryAfter = TimeUnit.NANOSECONDS.toMillis(handshakeBucket.getWaitTime(1)) +
+                    ThreadLocalRandom.current().nextLong(Math.max(0L, pluginInstance.getConfig().getAdmissionJitter()) + 1);
+            conn.close(TRY_AGAIN_LATER, "{\"retryAfter\": " + retryAfter + "}");
+            return;
+        }
+        final InetSocketAddress address = conn.getRemoteSocketAddress();
+        if (address != null) {
+            final int ipCount = ipConnections.computeIfAbsent(address.getAddress(), k->new AtomicInteger()).incrementAndGet();
+            // Another handshake from the same address may have been accepted in the mean time
+            if (ipCount > pluginInstance.getConfig().getMaxConnectionsPerIp()) {
+                releaseIpConnection(address.getAddress());
+                conn.close(CloseFrame.POLICY_VALIDATION, "Too many connections");
+                return;
+            }
+        }
+        final RateLimit chunkBudget = pluginInstance.getConfig().getChunkBudget();
+        sessions.put(conn, new ClientSession(conn, chunkBudget.isEnabled() ? new ChunkBudget(chunkBudget) : null));
+        super.onOpen(conn, handshake);
+    }
+
+    @Override
+    public void onClose(@Nonnull final WebSocket conn, final int code, final String reason, final boolean remote) {
+        // Only connections which were admitted are counted
+        if (sessions.remove(conn) != null && conn.getRemoteSocketAddress() != null) {
+            releaseIpConnection(conn.getRemoteSocketAddress().getAddress());
+        }
+        super.onClose(conn, code, reason, remote);
+    }
+
+    @Override
+    public void onMessage(@Nonnull final WebSocket conn, @Nonnull final String message) {
+        // Drop messages from addresses over their limit before any parsing
+        if (!tryAcquireIp(conn)) {
+            return;
+        }
+        final ClientSession session = sessions.get(conn);
+        // Connections without a session were refused in onOpen and are closing
+        if (session == null) {
+            return;
+        }
+        final CommandRequest request;
+        try {
+            request = CommandRequest.parse(message);
+        } catch (IOException e) {
+            // Let the default dispatcher answer malformed messages
+            super.onMessage(conn, message);
+            return;
+        }
+        final String commandName = request.getCommand();
+        final WsServerCommand command = commandName == null ? null : registrar.getCommand(commandName);
+        // Unknown commands use the default dispatcher, which only answers with an error
+        if (command == null) {
+            super.onMessage(conn, message);
+            return;
+        }
+        // The default dispatcher checks the interval of commands registered by other plugins itself
+        final boolean glmCommand = command instanceof GlmServerCommand;
+        if (glmCommand && !session.tryCallCommand(commandName, command.getInterval())) {
+            registrar.warnClient(conn, commandName);
+            return;
+        }
+        // Rate limited calls are not warned, the client only has to wait for its bucket to refill
+        final long waitTime = session.tryAcquireCommand(commandName, pluginInstance.getConfig().getCommandRateLimit(commandName));
+        if (waitTime > 0) {
+            registrar.sendRateLimited(conn, commandName, waitTime);
+            return;
+        }
+        // Commands registered by other plugins use the default dispatcher
+        if (!glmCommand) {
+            super.onMessage(conn, message);
+            return;
+        }
+        // Request ids are ignored unless the client negotiated them
+        final String requestId = session.getCapabilities().hasFeature(Capabilities.FEATURE_REQUEST_ID) ?
+                request.getRequestId() : null;
+        // Commands without a request id are answered in the order they arrive
+        if (requestId == null) {
+            ((GlmServerCommand) command).handle(conn, request);
+            return;
+        }
+        final RequestConnection requestConnection = new RequestConnection(conn, requestId);
+        if (!session.tryStartRequest(maxRequestsInFlight)) {
+            sendTooManyRequests(requestConnection, commandName);
+            return;
+        }
+        try {
+            commandPool.execute(()->{
+                try {
+                    ((GlmServerCommand) command).handle(requestConnection, request);
+                } catch (RuntimeException e) {
+                    pluginInstance.getLogger().error("Error running command " + commandName + ": ", e);
+                } finally {
+                    session.finishRequest();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The server is stopping
+            session.finishRequest();
+        }
+    }
+
+    /**
+     * @param address the ip address of a client.
+     * @return the number of open connections from the address.
+     */
+    private int getIpConnectionCount(@Nonnull final InetAddress address) {
+        final AtomicInteger count = ipConnections.get(address);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Counts a closed connection from an ip address. The address is forgotten once it has no open connections.
+     *
+     * @param address the ip address of the client.
+     */
+    private void releaseIpConnection(@Nonnull final InetAddress address) {
+        ipConnections.computeIfPresent(address, (k, count)->count.decrementAndGet() <= 0 ? null : count);
+    }
+
+    /**
+     * Takes a token from the rate limit bucket of a client's ip address.
+     *
+     * @param conn the client connection.
+     * @return true if the message was allowed false if the address is over the rate limit.
+     */
+    private boolean tryAcquireIp(@Nonnull final WebSocket conn) {
+        final InetSocketAddress address = conn.getRemoteSocketAddress();
+        return address == null || ipHistory.tryAcquireMessage(address.getAddress());
+    }
+
+    /**
+     * Tells a client that a command was dropped because it has too many commands in flight.
+     *
+     * @param conn        the request connection of the command.
+     * @param commandName the name of the dropped command.
+     */
+    private void sendTooManyRequests(@Nonnull final RequestConnection conn, @Nonnull final String commandName) {
+        try {
+            JsonMessages.send(conn, jsonGenerator->{
+                // Start json object
+                jsonGenerator.writeStartObject();
+                // echo command back
+                jsonGenerator.writeStringField("cmd", commandName);
+                jsonGenerator.writeStringField("error", "Too many requests");
+                // Close json object
+                jsonGenerator.writeEndObject();
+            });
+        } catch (IOException e) {
+            pluginInstance.getLogger().error("Json error", e);
+        }
+    }
+
+    @Override
+    public void stop(final int timeout) throws InterruptedException {
+        super.stop(timeout);
+        commandPool.shutdownNow();
+        if (expireTask != null) {
+            expireTask.cancel();
+            expireTask = null;
+        }
     }
 
     @Override
@@ -62,5 +336,79 @@ public class BaseGlmServer extends GlmServer {
     @Override
     public void onStart() {
         pluginInstance.getLogger().info("Starting WebSocket server on " + this.getAddress().getHostString() + ":" + this.getAddress().getPort());
+        // Forget ip addresses which were not seen for a while
+        expireTask = Task.builder().async().execute(ipHistory::expire).interval(1, TimeUnit.MINUTES)
+                .name("GlM Ip History Expire Task").submit(pluginInstance);
+    }
+
+    /**
+     * @return the number of ip addresses with open connections.
+     */
+    public int getConnectedIpCount() {
+        return ipConnections.size();
+    }
+
+    /**
+     * @return the number of ip addresses in the ip history.
+     */
+    public int getIpHistorySize() {
+        return ipHistory.size();
+    }
+
+    /**
+     * Gets the session for a client connection.
+     *
+     * @param conn the client connection, a {@link RequestConnection} is resolved to the connection it wraps.
+     * @return the session of the connection or empty if the connection is closed.
+     */
+    @Nonnull
+    public Optional<ClientSession> getSession(@Nonnull final WebSocket conn) {
+        if (conn instanceof RequestConnection) {
+            return Optional.ofNullable(sessions.get(((RequestConnection) conn).getConnection()));
+        }
+        return Optional.ofNullable(sessions.get(conn));
+    }
+
+    /**
+     * @return the sessions of all open client connections.
+     */
+    @Nonnull
+    public Collection<ClientSession> getSessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    /**
+     * Sends an already serialized json message to every client.
+     *
+     * @param message the utf-8 encoded message.
+     */
+    public void broadcast(@Nonnull final byte[] message) {
+        broadcast(message, session->true);
+    }
+
+    /**
+     * Sends an already serialized json message to the clients which match a filter. The message bytes are shared by
+     * every connection, only the frame around them is created per connection since compressed connections replace the
+     * frame payload.
+     *
+     * @param message the utf-8 encoded message.
+     * @param filter  selects the clients to send the message to.
+     */
+    public void broadcast(@Nonnull final byte[] message, @Nonnull final Predicate<ClientSession> filter) {
+        for (ClientSession session : sessions.values()) {
+            if (filter.test(session)) {
+                JsonMessages.sendText(session.getConnection(), message);
+            }
+        }
+    }
+
+    /**
+     * Sends an already serialized json message to the clients which are viewing a world.
+     *
+     * @param message the utf-8 encoded message.
+     * @param worldId the {@link java.util.UUID} of the world in string form.
+     */
+    public void broadcastToWorld(@Nonnull final byte[] message, @Nonnull final String worldId) {
+        broadcast(message, session->session.isViewingWorld(worldId));
     }
 }
@@ -0,0 +1,184 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable big endian byte buffer for building binary WebSocket messages.
+ *
+ * @author Tyler Bucher
+ */
+public final class BinaryMessageWriter {
+
+    /**
+     * The bytes written so far.
+     */
+    @Nonnull
+    private byte[] buffer;
+
+    /**
+     * The number of bytes written.
+     */
+    private int size;
+
+    /**
+     * Creates a new binary message writer.
+     *
+     * @param initialCapacity the initial size of the internal buffer.
+     */
+    public BinaryMessageWriter(final int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /**
+     * Writes a single byte.
+     *
+     * @param value the byte to write.
+     */
+    public void writeByte(final int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+    }
+
+    /**
+     * Writes a 32 bit integer.
+     *
+     * @param value the integer to write.
+     */
+    public void writeInt(final int value) {
+        ensureCapacity(4);
+        setInt(size, value);
+        size += 4;
+    }
+
+    /**
+     * Writes a 64 bit integer.
+     *
+     * @param value the long to write.
+     */
+    public void writeLong(final long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    /**
+     * Writes an unsigned variable length integer, 7 bits per byte with the high bit set on every byte but the last.
+     *
+     * @param value the unsigned value to write.
+     */
+    public void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    /**
+     * Writes a signed variable length integer using zig-zag encoding so small negative values stay small.
+     *
+     * @param value the signed value to write.
+     */
+    public void writeSignedVarInt(final int value) {
+        writeVarLong(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Writes raw bytes.
+     *
+     * @param bytes the bytes to write.
+     */
+    public void writeBytes(@Nonnull final byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    /**
+     * Writes a byte array prefixed with its length as a variable length integer.
+     *
+     * @param bytes the bytes to write.
+     */
+    public void writeByteArray(@Nonnull final byte[] bytes) {
+        writeVarLong(bytes.length);
+        writeBytes(bytes);
+    }
+
+    /**
+     * Overwrites a byte at a position which has already been written.
+     *
+     * @param position the position of the byte.
+     * @param value    the byte to write.
+     */
+    public void setByte(final int position, final int value) {
+        buffer[position] = (byte) value;
+    }
+
+    /**
+     * Overwrites a 32 bit integer at a position which has already been written.
+     *
+     * @param position the position of the integer.
+     * @param value    the integer to write.
+     */
+    public void setInt(final int position, final int value) {
+        buffer[position] = (byte) (value >>> 24);
+        buffer[position + 1] = (byte) (value >>> 16);
+        buffer[position + 2] = (byte) (value >>> 8);
+        buffer[position + 3] = (byte) value;
+    }
+
+    /**
+     * @return the number of bytes written.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a buffer holding exactly the bytes written. The internal array is wrapped without copying if it is full,
+     * since frame compression reads the whole backing array of a buffer. The writer should not be used after calling
+     * this.
+     *
+     * @return a buffer holding the bytes written.
+     */
+    @Nonnull
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(size == buffer.length ? buffer : Arrays.copyOf(buffer, size));
+    }
+
+    /**
+     * Grows the internal buffer if needed.
+     *
+     * @param length the number of bytes about to be written.
+     */
+    private void ensureCapacity(final int length) {
+        if (size + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, size + length));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Layout of the binary GLM messages. Clients opt in to binary chunk messages during {@code init}. All numbers are big
+ * endian. Every message starts with a fixed header:
+ * <pre>
+ * offset size field
+ *      0    1 magic, always {@link #MAGIC}
+ *      1    1 protocol version, {@link #VERSION}
+ *      2    1 message type
+ *      3    1 flags
+ *      4   16 world uuid, most significant bits first
+ *     20    4 page number
+ *     24    4 number of chunks in this message
+ *     28    4 total chunks sent for the request, only set on the final page
+ *     32    4 chunks queued for loading or generation, only set on the final page
+ * </pre>
+ * The fixed header is followed by the request id of the command the message answers, as the utf-8 json text of the
+ * id prefixed with its variable length size. Messages which do not answer a command with a request id have a size of
+ * 0 and no text.
+ * <p>
+ * A {@link #TYPE_CHUNK_PAGE} message is followed by its chunks, each written as zig-zag variable length integers
+ * x, y and z, a variable length generation time and then the gzip compressed chunk data and height data as raw bytes,
+ * each prefixed with its variable length size. A chunk whose payload is not valid base64 can not be sent in this form
+ * and is sent to the client in a json chunk page of its own instead.
+ * <p>
+ * A {@link #TYPE_STATE_TABLE} message uses an all zero world uuid and page 0, with the number of block states as its
+ * count. It is followed by the table hash as utf-8 text prefixed with its variable length size, and then by the gzip
+ * compressed table which holds one utf-8 block state name per line and runs to the end of the message.
+ *
+ * @author Tyler Bucher
+ */
+public final class BinaryProtocol {
+
+    /**
+     * The first byte of every binary message.
+     */
+    public static final int MAGIC = 0x47;
+
+    /**
+     * The current version of the binary protocol.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * The size in bytes of the fixed message header, not counting the request id which follows it.
+     */
+    public static final int HEADER_SIZE = 36;
+
+    /**
+     * Message type for a page of chunks.
+     */
+    public static final int TYPE_CHUNK_PAGE = 1;
+
+    /**
+     * Message type for the block state table.
+     */
+    public static final int TYPE_STATE_TABLE = 2;
+
+    /**
+     * Flag which is set when more pages will follow for the same request.
+     */
+    public static final int FLAG_MORE = 1;
+
+    /**
+     * Offset of the chunk count in the header.
+     */
+    public static final int CHUNK_COUNT_OFFSET = 24;
+
+    /**
+     * Offset of the total chunk count in the header.
+     */
+    public static final int TOTAL_CHUNKS_OFFSET = 28;
+
+    /**
+     * Offset of the queued chunk count in the header.
+     */
+    public static final int QUEUED_CHUNKS_OFFSET = 32;
+
+    /**
+     * Offset of the flags in the header.
+     */
+    public static final int FLAGS_OFFSET = 3;
+
+    /**
+     * Writes a message header and the request id which follows it. Counts are written as 0 and can be set later with
+     * {@link BinaryMessageWriter#setInt(int, int)}.
+     *
+     * @param writer    the writer to write the header to.
+     * @param type      the type of the message.
+     * @param worldId   the world the message is for.
+     * @param page      the page number of the message.
+     * @param requestId the request id as a json value or null if the command had no request id.
+     */
+    public static void writeHeader(@Nonnull final BinaryMessageWriter writer, final int type, @Nonnull final UUID worldId,
+                                   final int page, @Nullable final String requestId) {
+        writer.writeByte(MAGIC);
+        writer.writeByte(VERSION);
+        writer.writeByte(type);
+        writer.writeByte(0);
+        writer.writeLong(worldId.getMostSignificantBits());
+        writer.writeLong(worldId.getLeastSignificantBits());
+        writer.writeInt(page);
+        writer.writeInt(0);
+        writer.writeInt(0);
+        writer.writeInt(0);
+        writer.writeByteArray(requestId == null ? new byte[0] : requestId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Turns the text form of a compressed chunk payload back into the raw compressed bytes. Chunk payloads are stored
+     * and sent as base64 text in the json protocol.
+     *
+     * @param payload the base64 encoded payload.
+     * @return the raw compressed bytes.
+     *
+     * @throws IllegalArgumentException if the payload is not valid base64.
+     */
+    @Nonnull
+    public static byte[] decodePayload(@Nonnull final String payload) {
+        return Base64.getMimeDecoder().decode(payload);
+    }
+}
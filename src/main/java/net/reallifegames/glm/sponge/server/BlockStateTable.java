@@ -0,0 +1,163 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import org.spongepowered.api.block.BlockState;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The ordered table of {@link BlockState} names which chunk data indexes into. The table never changes while the server
+ * is running, so it is identified by a hash of its content which clients can use to keep their own copy between
+ * visits.
+ *
+ * @author Tyler Bucher
+ */
+public final class BlockStateTable {
+
+    /**
+     * The names of the block states in table order.
+     */
+    @Nonnull
+    private final List<String> stateNames;
+
+    /**
+     * The hex encoded sha-256 hash of the table.
+     */
+    @Nonnull
+    private final String hash;
+
+    /**
+     * The gzip compressed table, one utf-8 state name per line.
+     */
+    @Nonnull
+    private final byte[] compressedTable;
+
+    /**
+     * Creates a new block state table.
+     *
+     * @param stateNames the names of the block states in table order.
+     * @param hash       the hex encoded sha-256 hash of the table.
+     * @param compressed the gzip compressed table.
+     */
+    private BlockStateTable(@Nonnull final List<String> stateNames, @Nonnull final String hash, @Nonnull final byte[] compressed) {
+        this.stateNames = stateNames;
+        this.hash = hash;
+        this.compressedTable = compressed;
+    }
+
+    /**
+     * Builds the table for the given block states.
+     *
+     * @param stateList the block states in table order.
+     * @return the new block state table.
+     */
+    @Nonnull
+    public static BlockStateTable create(@Nonnull final List<BlockState> stateList) {
+        final List<String> stateNames = new ArrayList<>(stateList.size());
+        final ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+        for (BlockState blockState : stateList) {
+            final String stateName = blockState.toString();
+            stateNames.add(stateName);
+            final byte[] nameBytes = stateName.getBytes(StandardCharsets.UTF_8);
+            tableBytes.write(nameBytes, 0, nameBytes.length);
+            tableBytes.write('\n');
+        }
+        final byte[] table = tableBytes.toByteArray();
+        return new BlockStateTable(Collections.unmodifiableList(stateNames), hash(table), compress(table));
+    }
+
+    /**
+     * @return the names of the block states in table order.
+     */
+    @Nonnull
+    public List<String> getStateNames() {
+        return stateNames;
+    }
+
+    /**
+     * @return the hex encoded sha-256 hash of the table.
+     */
+    @Nonnull
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return the gzip compressed table, one utf-8 state name per line.
+     */
+    @Nonnull
+    public byte[] getCompressedTable() {
+        return compressedTable;
+    }
+
+    /**
+     * Hashes the table with sha-256.
+     *
+     * @param table the utf-8 table.
+     * @return the hex encoded hash.
+     */
+    @Nonnull
+    private static String hash(@Nonnull final byte[] table) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(table);
+            final StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every java platform is required to support sha-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compresses the table with gzip.
+     *
+     * @param table the utf-8 table.
+     * @return the compressed table.
+     */
+    @Nonnull
+    private static byte[] compress(@Nonnull final byte[] table) {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(table.length / 4);
+        try (OutputStream outputStream = new GZIPOutputStream(compressed)) {
+            outputStream.write(table);
+        } catch (IOException e) {
+            // Writing to memory can not fail
+            throw new IllegalStateException(e);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A serialized message together with the cache generation it was built for.
+ *
+ * @author Tyler Bucher
+ */
+class CachedMessage {
+
+    /**
+     * The cache generation the message was built for.
+     */
+    private final long generation;
+
+    /**
+     * The utf-8 encoded message.
+     */
+    @Nonnull
+    private final byte[] message;
+
+    /**
+     * Creates a new {@link CachedMessage}.
+     *
+     * @param generation the cache generation the message was built for.
+     * @param message    the utf-8 encoded message.
+     */
+    CachedMessage(final long generation, @Nonnull final byte[] message) {
+        this.generation = generation;
+        this.message = message;
+    }
+
+    /**
+     * @return the cache generation the message was built for.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the utf-8 encoded message.
+     */
+    @Nonnull
+    public byte[] getMessage() {
+        return message;
+    }
+}
+
+/**
+ * A json response which is the same for every client. The response is serialized the first time it is needed and the
+ * bytes are reused until {@link #invalidateAll()} is called, which happens when the config, the list of worlds, a world
+ * spawn or a world border changes.
+ * <p>
+ * Responses which read game state are created with {@link #ofGameState(JsonMessages.JsonWriter)}. They are built on
+ * the main thread when they are created and again by every {@link #invalidateAll()}, so request threads only ever send
+ * the stored bytes.
+ *
+ * @author Tyler Bucher
+ */
+public final class CachedResponse {
+
+    /**
+     * The current cache generation. Cached messages built for an older generation are rebuilt.
+     */
+    @Nonnull
+    private static final AtomicLong currentGeneration = new AtomicLong();
+
+    /**
+     * The responses which read game state and are rebuilt on the main thread.
+     */
+    @Nonnull
+    private static final List<CachedResponse> gameStateResponses = new CopyOnWriteArrayList<>();
+
+    /**
+     * Writes the content of the response.
+     */
+    @Nonnull
+    private final JsonMessages.JsonWriter jsonWriter;
+
+    /**
+     * True if the response reads game state and is only built on the main thread.
+     */
+    private final boolean gameState;
+
+    /**
+     * The last serialized response or null if it was never built.
+     */
+    private volatile CachedMessage cachedMessage;
+
+    /**
+     * Creates a new cached response.
+     *
+     * @param jsonWriter writes the content of the response.
+     */
+    public CachedResponse(@Nonnull final JsonMessages.JsonWriter jsonWriter) {
+        this(jsonWriter, false);
+    }
+
+    /**
+     * Creates a new cached response.
+     *
+     * @param jsonWriter writes the content of the response.
+     * @param gameState  true if the response reads game state and is only built on the main thread.
+     */
+    private CachedResponse(@Nonnull final JsonMessages.JsonWriter jsonWriter, final boolean gameState) {
+        this.jsonWriter = jsonWriter;
+        this.gameState = gameState;
+    }
+
+    /**
+     * Creates a new cached response which reads game state and builds it right away. This must be called on the main
+     * thread.
+     *
+     * @param jsonWriter writes the content of the response.
+     * @return the cached response.
+     */
+    @Nonnull
+    public static CachedResponse ofGameState(@Nonnull final JsonMessages.JsonWriter jsonWriter) {
+        final CachedResponse cachedResponse = new CachedResponse(jsonWriter, true);
+        cachedResponse.rebuild();
+        gameStateResponses.add(cachedResponse);
+        return cachedResponse;
+    }
+
+    /**
+     * Returns the serialized response, building it first if it is missing or out of date.
+     *
+     * @return the utf-8 encoded response.
+     *
+     * @throws IOException if the response could not be written.
+     */
+    @Nonnull
+    public byte[] get() throws IOException {
+        final long generation = currentGeneration.get();
+        final CachedMessage message = cachedMessage;
+        // Game state responses are only built on the main thread
+        if (gameState) {
+            if (message == null) {
+                throw new IOException("Response could not be built");
+            }
+            return message.getMessage();
+        }
+        if (message != null && message.getGeneration() == generation) {
+            return message.getMessage();
+        }
+        // Concurrent rebuilds produce the same bytes so the last one to finish wins
+        final CachedMessage newMessage = new CachedMessage(generation, JsonMessages.toBytes(jsonWriter));
+        cachedMessage = newMessage;
+        return newMessage.getMessage();
+    }
+
+    /**
+     * Serializes the response for the current cache generation. The old response is kept if this one fails.
+     */
+    private void rebuild() {
+        final long generation = currentGeneration.get();
+        try {
+            cachedMessage = new CachedMessage(generation, JsonMessages.toBytes(jsonWriter));
+        } catch (IOException | RuntimeException e) {
+            // Keep serving the last response
+        }
+    }
+
+    /**
+     * Marks every cached response as out of date and rebuilds the responses which read game state. This must be
+     * called on the main thread.
+     */
+    public static void invalidateAll() {
+        currentGeneration.incrementAndGet();
+        for (CachedResponse cachedResponse : gameStateResponses) {
+            cachedResponse.rebuild();
+        }
+    }
+
+    /**
+     * Forgets the responses which read game state, so a restarted server does not rebuild the old ones.
+     */
+    public static void clearGameStateResponses() {
+        gameStateResponses.clear();
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The wire format and optional features agreed on with one client during {@code init}. The client lists the
+ * encodings it can read in order of preference and the features it understands, the server picks the first encoding
+ * it also supports and keeps the features both sides know. Clients which send nothing, or only the old
+ * {@code binary} flag, keep working as before.
+ *
+ * @author Tyler Bucher
+ */
+public final class Capabilities {
+
+    /**
+     * Chunk pages sent as json text with base64 chunk data.
+     */
+    public static final String ENCODING_JSON = "json";
+
+    /**
+     * Chunk pages sent as binary frames laid out as described in {@link BinaryProtocol}.
+     */
+    public static final String ENCODING_BINARY = "binary";
+
+    /**
+     * The encodings supported by this server.
+     */
+    @Nonnull
+    public static final List<String> ENCODINGS = Collections.unmodifiableList(Arrays.asList(ENCODING_BINARY, ENCODING_JSON));
+
+    /**
+     * Responses echo the {@code requestId} of the command.
+     */
+    public static final String FEATURE_REQUEST_ID = "requestId";
+
+    /**
+     * Changed chunks inside the area set with {@code setViewport} are pushed to the client without being asked for.
+     */
+    public static final String FEATURE_CHUNK_PUSH = "chunkPush";
+
+    /**
+     * Player positions are pushed to the client for the world of its viewport.
+     */
+    public static final String FEATURE_PLAYER_PUSH = "playerPush";
+
+    /**
+     * Player positions are pushed as {@code playerDelta} messages instead of full player lists, needs
+     * {@link #FEATURE_PLAYER_PUSH}.
+     */
+    public static final String FEATURE_PLAYER_DELTA = "playerDelta";
+
+    /**
+     * Player lists and deltas only hold the players inside the client's viewport plus a margin.
+     */
+    public static final String FEATURE_PLAYER_VIEWPORT = "playerViewport";
+
+    /**
+     * The features supported by this server.
+     */
+    @Nonnull
+    public static final List<String> FEATURES = Collections.unmodifiableList(Arrays.asList(FEATURE_REQUEST_ID,
+            FEATURE_CHUNK_PUSH, FEATURE_PLAYER_PUSH, FEATURE_PLAYER_DELTA, FEATURE_PLAYER_VIEWPORT));
+
+    /**
+     * The capabilities of a client which did not negotiate any.
+     */
+    @Nonnull
+    public static final Capabilities LEGACY = new Capabilities(ENCODING_JSON, Collections.emptySet());
+
+    /**
+     * The encoding used for chunk data.
+     */
+    @Nonnull
+    private final String encoding;
+
+    /**
+     * The optional features both sides support.
+     */
+    @Nonnull
+    private final Set<String> features;
+
+    /**
+     * Creates a new set of capabilities.
+     *
+     * @param encoding the encoding used for chunk data.
+     * @param features the optional features both sides support.
+     */
+    private Capabilities(@Nonnull final String encoding, @Nonnull final Set<String> features) {
+        this.encoding = encoding;
+        this.features = features;
+    }
+
+    /**
+     * Selects the capabilities for a client from the data of its init command.
+     *
+     * @param dataNode the data of the init command or null if it was not sent.
+     * @return the selected capabilities.
+     */
+    @Nonnull
+    public static Capabilities negotiate(@Nullable final JsonNode dataNode) {
+        if (dataNode == null) {
+            return LEGACY;
+        }
+        // Older clients only send the binary flag
+        String encoding = dataNode.path("binary").asBoolean(false) ? ENCODING_BINARY : ENCODING_JSON;
+        final JsonNode encodingsNode = dataNode.get("encodings");
+        if (encodingsNode != null && encodingsNode.isArray()) {
+            for (JsonNode encodingNode : encodingsNode) {
+                if (ENCODINGS.contains(encodingNode.asText())) {
+                    encoding = encodingNode.asText();
+                    break;
+                }
+            }
+        }
+        final Set<String> features = new HashSet<>();
+        final JsonNode featuresNode = dataNode.get("features");
+        if (featuresNode != null && featuresNode.isArray()) {
+            for (JsonNode featureNode : featuresNode) {
+                if (FEATURES.contains(featureNode.asText())) {
+                    features.add(featureNode.asText());
+                }
+            }
+        }
+        return new Capabilities(encoding, Collections.unmodifiableSet(features));
+    }
+
+    /**
+     * @return the encoding used for chunk data.
+     */
+    @Nonnull
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @return true if chunk data is sent as binary frames.
+     */
+    public boolean isBinary() {
+        return ENCODING_BINARY.equals(encoding);
+    }
+
+    /**
+     * @return the optional features both sides support.
+     */
+    @Nonnull
+    public Set<String> getFeatures() {
+        return features;
+    }
+
+    /**
+     * @param feature the name of the feature.
+     * @return true if both sides support the feature.
+     */
+    public boolean hasFeature(@Nonnull final String feature) {
+        return features.contains(feature);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import com.flowpowered.math.vector.Vector3i;
+import net.reallifegames.glm.sponge.GlMap;
+import org.java_websocket.WebSocket;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Charges chunk requests against a per client budget by what they cost the server. Every requested position costs
+ * {@link #COST_REQUEST}, a chunk which has to be read from the sql server costs {@link #COST_SQL} more and a chunk
+ * which has to be loaded or generated on the main thread costs {@link #COST_GENERATE} more. Chunks which do not fit in
+ * the budget are not processed, instead the client is told which chunks were deferred and when it can ask again:
+ * <pre>
+ * {"cmd": "chunksDeferred", "data": {"worldId": "...", "retryAfter": 250, "positions": [x, z, x, z]}}
+ * </pre>
+ *
+ * @author Tyler Bucher
+ */
+public final class ChunkBudget {
+
+    /**
+     * The cost of every requested position.
+     */
+    public static final int COST_REQUEST = 1;
+
+    /**
+     * The extra cost of a chunk which is not in the cache.
+     */
+    public static final int COST_SQL = 4;
+
+    /**
+     * The extra cost of a chunk which has to be loaded or generated.
+     */
+    public static final int COST_GENERATE = 32;
+
+    /**
+     * The bucket the costs are charged against.
+     */
+    @Nonnull
+    private final TokenBucket bucket;
+
+    /**
+     * Creates a new full chunk budget.
+     *
+     * @param rateLimit the cost a client can spend per second and can save up.
+     */
+    public ChunkBudget(@Nonnull final RateLimit rateLimit) {
+        this.bucket = rateLimit.createBucket();
+    }
+
+    /**
+     * Charges as many chunks as the budget allows.
+     *
+     * @param chunks       the number of chunks.
+     * @param costPerChunk the cost of each chunk.
+     * @return the number of chunks which were charged and may be processed.
+     */
+    public int admit(final int chunks, final int costPerChunk) {
+        return (int) bucket.tryAcquireUpTo(chunks, costPerChunk);
+    }
+
+    /**
+     * Gets the time until the budget covers a number of chunks.
+     *
+     * @param chunks       the number of chunks.
+     * @param costPerChunk the cost of each chunk.
+     * @return the time in milliseconds until the chunks can be requested again.
+     */
+    public long getRetryAfter(final int chunks, final int costPerChunk) {
+        return TimeUnit.NANOSECONDS.toMillis(bucket.getWaitTime((long) chunks * costPerChunk)) + 1;
+    }
+
+    /**
+     * Admits chunks for a client.
+     *
+     * @param session      the session of the client or null if it is not known.
+     * @param chunks       the number of chunks.
+     * @param costPerChunk the cost of each chunk.
+     * @return the number of chunks which may be processed.
+     */
+    public static int admit(@Nullable final ClientSession session, final int chunks, final int costPerChunk) {
+        final ChunkBudget budget = session == null ? null : session.getChunkBudget();
+        return budget == null ? chunks : budget.admit(chunks, costPerChunk);
+    }
+
+    /**
+     * Charges the request cost of a list of chunk positions. Positions which do not fit in the budget are removed from
+     * the end of the list and the client is told about them.
+     *
+     * @param pluginInstance the {@link GlMap} instance.
+     * @param connection     the client connection.
+     * @param worldId        the {@link java.util.UUID} of the world in string form.
+     * @param positions      the requested chunk positions, in the order they should be processed.
+     * @return the positions which may be processed.
+     */
+    @Nonnull
+    public static List<Vector3i> admitRequest(@Nonnull final GlMap pluginInstance, @Nonnull final WebSocket connection,
+                                              @Nonnull final String worldId, @Nonnull final List<Vector3i> positions) {
+        final ClientSession session = pluginInstance.getBaseGlmServer().getSession(connection).orElse(null);
+        final int admitted = admit(session, positions.size(), COST_REQUEST);
+        if (admitted >= positions.size()) {
+            return positions;
+        }
+        sendDeferred(pluginInstance, session, connection, worldId, new ArrayList<>(positions.subList(admitted, positions.size())),
+                COST_REQUEST);
+        return new ArrayList<>(positions.subList(0, admitted));
+    }
+
+    /**
+     * Tells a client which chunks were deferred and when to ask for them again.
+     *
+     * @param pluginInstance the {@link GlMap} instance.
+     * @param session        the session of the client or null if it is not known.
+     * @param connection     the client connection.
+     * @param worldId        the {@link java.util.UUID} of the world in string form.
+     * @param positions      the chunk positions which were deferred.
+     * @param costPerChunk   the cost of each deferred chunk.
+     */
+    public static void sendDeferred(@Nonnull final GlMap pluginInstance, @Nullable final ClientSession session,
+                                    @Nonnull final WebSocket connection, @Nonnull final String worldId,
+                                    @Nonnull final List<Vector3i> positions, final int costPerChunk) {
+        final ChunkBudget budget = session == null ? null : session.getChunkBudget();
+        if (session == null || positions.isEmpty() || budget == null || !connection.isOpen()) {
+            return;
+        }
+        final long retryAfter = budget.getRetryAfter(positions.size(), costPerChunk);
+        // Let viewport updates ask for these chunks again
+        for (Vector3i position : positions) {
+            session.unmarkChunkSent(worldId, position.getX(), position.getZ());
+        }
+        try {
+            JsonMessages.send(connection, jsonGenerator->{
+                // Start json object
+                jsonGenerator.writeStartObject();
+                jsonGenerator.writeStringField("cmd", "chunksDeferred");
+                // Start data block
+                jsonGenerator.writeObjectFieldStart("data");
+                // echo world id
+                jsonGenerator.writeStringField("worldId", worldId);
+                jsonGenerator.writeNumberField("retryAfter", retryAfter);
+                // start position array
+                jsonGenerator.writeArrayFieldStart("positions");
+                for (Vector3i position : positions) {
+                    jsonGenerator.writeNumber(position.getX());
+                    jsonGenerator.writeNumber(position.getZ());
+                }
+                // close position array
+                jsonGenerator.writeEndArray();
+                // close data object
+                jsonGenerator.writeEndObject();
+                // Close json object
+                jsonGenerator.writeEndObject();
+            });
+        } catch (IOException e) {
+            pluginInstance.getLogger().error("Json error", e);
+        }
+    }
+}
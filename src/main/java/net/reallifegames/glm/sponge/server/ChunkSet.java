@@ -0,0 +1,189 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A compact set of chunk positions. Positions are grouped into regions of 32 by 32 chunks and every region which
+ * holds at least one position is stored as a 1024 bit bitmap, so a client which has received a few thousand chunks
+ * costs a few kilobytes to track. This class is not thread safe.
+ *
+ * @author Tyler Bucher
+ */
+public final class ChunkSet {
+
+    /**
+     * The number of bits used for a chunk position inside of a region.
+     */
+    private static final int REGION_SHIFT = 5;
+
+    /**
+     * The mask for a chunk position inside of a region.
+     */
+    private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+
+    /**
+     * The number of longs needed for the bitmap of one region.
+     */
+    private static final int REGION_WORDS = (1 << (REGION_SHIFT * 2)) / 64;
+
+    /**
+     * The bitmaps of all regions with at least one chunk.
+     */
+    private final Map<Long, long[]> regions = new HashMap<>();
+
+    /**
+     * The number of chunks in this set.
+     */
+    private int size;
+
+    /**
+     * Adds a chunk to this set.
+     *
+     * @param x the x position of the chunk.
+     * @param z the z position of the chunk.
+     * @return true if the chunk was not already in this set.
+     */
+    public boolean add(final int x, final int z) {
+        final long[] bitmap = regions.computeIfAbsent(regionKey(x, z), k->new long[REGION_WORDS]);
+        final int bit = bitIndex(x, z);
+        final long mask = 1L << (bit & 63);
+        if ((bitmap[bit >>> 6] & mask) != 0) {
+            return false;
+        }
+        bitmap[bit >>> 6] |= mask;
+        size++;
+        return true;
+    }
+
+    /**
+     * Checks if a chunk is in this set.
+     *
+     * @param x the x position of the chunk.
+     * @param z the z position of the chunk.
+     * @return true if the chunk is in this set.
+     */
+    public boolean contains(final int x, final int z) {
+        final long[] bitmap = regions.get(regionKey(x, z));
+        if (bitmap == null) {
+            return false;
+        }
+        final int bit = bitIndex(x, z);
+        return (bitmap[bit >>> 6] & (1L << (bit & 63))) != 0;
+    }
+
+    /**
+     * Removes a chunk from this set.
+     *
+     * @param x the x position of the chunk.
+     * @param z the z position of the chunk.
+     * @return true if the chunk was in this set.
+     */
+    public boolean remove(final int x, final int z) {
+        final long key = regionKey(x, z);
+        final long[] bitmap = regions.get(key);
+        if (bitmap == null) {
+            return false;
+        }
+        final int bit = bitIndex(x, z);
+        final long mask = 1L << (bit & 63);
+        if ((bitmap[bit >>> 6] & mask) == 0) {
+            return false;
+        }
+        bitmap[bit >>> 6] &= ~mask;
+        size--;
+        // Drop empty regions
+        for (long word : bitmap) {
+            if (word != 0) {
+                return true;
+            }
+        }
+        regions.remove(key);
+        return true;
+    }
+
+    /**
+     * Removes every region which does not intersect the given chunk rectangle.
+     *
+     * @param minX the minimum chunk x position to keep.
+     * @param minZ the minimum chunk z position to keep.
+     * @param maxX the maximum chunk x position to keep.
+     * @param maxZ the maximum chunk z position to keep.
+     */
+    public void retainRegions(final int minX, final int minZ, final int maxX, final int maxZ) {
+        final Iterator<Map.Entry<Long, long[]>> iterator = regions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Long, long[]> entry = iterator.next();
+            final int regionX = (int) (entry.getKey() >> 32);
+            final int regionZ = (int) (long) entry.getKey();
+            if (regionX < (minX >> REGION_SHIFT) || regionX > (maxX >> REGION_SHIFT) ||
+                    regionZ < (minZ >> REGION_SHIFT) || regionZ > (maxZ >> REGION_SHIFT)) {
+                for (long word : entry.getValue()) {
+                    size -= Long.bitCount(word);
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all chunks from this set.
+     */
+    public void clear() {
+        regions.clear();
+        size = 0;
+    }
+
+    /**
+     * @return the number of chunks in this set.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the key of the region which contains a chunk.
+     *
+     * @param x the x position of the chunk.
+     * @param z the z position of the chunk.
+     * @return the key of the region.
+     */
+    private static long regionKey(final int x, final int z) {
+        return ((long) (x >> REGION_SHIFT) << 32) | ((z >> REGION_SHIFT) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the index of a chunk inside of its region bitmap.
+     *
+     * @param x the x position of the chunk.
+     * @param z the z position of the chunk.
+     * @return the bit index of the chunk.
+     */
+    private static int bitIndex(final int x, final int z) {
+        return ((z & REGION_MASK) << REGION_SHIFT) | (x & REGION_MASK);
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.flowpowered.math.vector.Vector3i;
+import net.reallifegames.glm.api.GlmChunk;
+import net.reallifegames.glm.sponge.GlMap;
+import org.java_websocket.WebSocket;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Streams the chunks of one chunk request back to a client in pages. A page is sent once it reaches the configured
+ * maximum size or when the caller flushes it, and every page is marked with {@code more: true} until the request is
+ * completed. The final page is marked with {@code more: false} and contains totals for the whole request. Clients
+ * which negotiated binary chunks receive the same pages as binary frames laid out as described in
+ * {@link BinaryProtocol}. A chunk which can not be written in binary form is sent in a json page of its own.
+ *
+ * @author Tyler Bucher
+ */
+public final class ChunkStream {
+
+    /**
+     * The {@link GlMap} instance.
+     */
+    @Nonnull
+    private final GlMap pluginInstance;
+
+    /**
+     * The client connection to stream chunks to.
+     */
+    @Nonnull
+    private final WebSocket connection;
+
+    /**
+     * The {@link UUID} of the world in string form.
+     */
+    @Nonnull
+    private final String worldId;
+
+    /**
+     * The size in bytes at which a page is sent to the client.
+     */
+    private final int maxPageSize;
+
+    /**
+     * The session of the client or null if the client is no longer connected.
+     */
+    @Nullable
+    private final ClientSession session;
+
+    /**
+     * True if pages are sent as binary frames.
+     */
+    private final boolean binary;
+
+    /**
+     * The request id the pages answer as a json value or null if the request had no id.
+     */
+    @Nullable
+    private final String requestId;
+
+    /**
+     * The utf-8 output buffer for the current json page.
+     */
+    private ByteArrayBuilder pageBuffer;
+
+    /**
+     * The json generator for the current page.
+     */
+    private JsonGenerator pageGenerator;
+
+    /**
+     * The writer for the current binary page.
+     */
+    private BinaryMessageWriter binaryPage;
+
+    /**
+     * The number of chunks in the current page.
+     */
+    private int pageChunks;
+
+    /**
+     * The positions of the chunks in the current page, marked as sent once the page is written to the connection.
+     */
+    @Nonnull
+    private final List<Vector3i> pagePositions = new ArrayList<>();
+
+    /**
+     * The number of pages sent to the client.
+     */
+    private int pageCount;
+
+    /**
+     * The number of chunks sent to the client.
+     */
+    private int totalChunks;
+
+    /**
+     * States if the final page was sent.
+     */
+    private boolean completed;
+
+    /**
+     * Creates a new chunk stream for one client request.
+     *
+     * @param pluginInstance the {@link GlMap} instance.
+     * @param connection     the client connection to stream chunks to.
+     * @param worldId        the {@link UUID} of the world in string form.
+     */
+    public ChunkStream(@Nonnull final GlMap pluginInstance, @Nonnull final WebSocket connection, @Nonnull final String worldId) {
+        this(pluginInstance, connection, worldId, true);
+    }
+
+    /**
+     * Creates a new chunk stream for one client request.
+     *
+     * @param pluginInstance the {@link GlMap} instance.
+     * @param connection     the client connection to stream chunks to.
+     * @param worldId        the {@link UUID} of the world in string form.
+     * @param allowBinary    false if pages must be sent as json even if the client negotiated binary chunks.
+     */
+    private ChunkStream(@Nonnull final GlMap pluginInstance, @Nonnull final WebSocket connection, @Nonnull final String worldId,
+                        final boolean allowBinary) {
+        this.pluginInstance = pluginInstance;
+        this.connection = connection;
+        this.worldId = worldId;
+        this.maxPageSize = pluginInstance.getConfig().getMaxChunkPageSize();
+        this.session = pluginInstance.getBaseGlmServer().getSession(connection).orElse(null);
+        this.binary = allowBinary && session != null && session.isBinaryChunks();
+        this.requestId = RequestConnection.getRequestId(connection);
+    }
+
+    /**
+     * Adds a chunk to the current page. The page is sent if it has reached the maximum page size.
+     *
+     * @param position the position of the chunk.
+     * @param glChunk  the chunk to send.
+     */
+    public synchronized void add(@Nonnull final Vector3i position, @Nonnull final GlmChunk glChunk) {
+        if (completed) {
+            return;
+        }
+        try {
+            if (binary) {
+                if (!addBinary(position, glChunk)) {
+                    sendJsonChunk(position, glChunk);
+                    return;
+                }
+            } else {
+                addJson(position, glChunk);
+            }
+            pageChunks++;
+            totalChunks++;
+            pagePositions.add(position);
+            // Send the page once it is full
+            if (getPageSize() >= maxPageSize) {
+                sendPage(true, 0);
+            }
+        } catch (IOException e) {
+            pluginInstance.getLogger().error("Error writing chunk", e);
+        }
+    }
+
+    /**
+     * Sends the current page to the client if it contains any chunks.
+     */
+    public synchronized void flush() {
+        if (completed || pageChunks == 0) {
+            return;
+        }
+        try {
+            sendPage(true, 0);
+        } catch (IOException e) {
+            pluginInstance.getLogger().error("Json error", e);
+        }
+    }
+
+    /**
+     * Sends the final page to the client. Chunks added after this call are ignored.
+     *
+     * @param queuedChunks the number of chunks which were queued for loading or generation and will be sent later.
+     */
+    public synchronized void complete(final int queuedChunks) {
+        if (completed) {
+            return;
+        }
+        try {
+            if (pageChunks == 0) {
+                startPage();
+            }
+            sendPage(false, queuedChunks);
+        } catch (IOException e) {
+            pluginInstance.getLogger().error("Json error", e);
+        }
+        completed = true;
+    }
+
+    /**
+     * @return true if the client is still connected false otherwise.
+     */
+    public boolean isOpen() {
+        return connection.isOpen();
+    }
+
+    /**
+     * Adds a chunk to the current json page.
+     *
+     * @param position the position of the chunk.
+     * @param glChunk  the chunk to send.
+     * @throws IOException if the chunk could not be written.
+     */
+    private void addJson(@Nonnull final Vector3i position, @Nonnull final GlmChunk glChunk) throws IOException {
+        if (pageChunks == 0) {
+            startPage();
+        }
+        pageGenerator.writeStartObject();
+        pageGenerator.writeObjectFieldStart("position");
+        pageGenerator.writeNumberField("x", position.getX());
+        pageGenerator.writeNumberField("y", position.getY());
+        pageGenerator.writeNumberField("z", position.getZ());
+        // close position object
+        pageGenerator.writeEndObject();
+        pageGenerator.writeStringField("chunkData", glChunk.getChunkData());
+        pageGenerator.writeStringField("chunkHeightData", glChunk.getChunkHeightData());
+        pageGenerator.writeNumberField("generationTime", glChunk.getChunkGenerationTime());
+        // close chunk
+        pageGenerator.writeEndObject();
+        pageGenerator.flush();
+    }
+
+    /**
+     * Adds a chunk to the current binary page.
+     *
+     * @param position the position of the chunk.
+     * @param glChunk  the chunk to send.
+     * @return true if the chunk was added, false if its payload is not base64 and it must be sent as json.
+     *
+     * @throws IOException if the page could not be started.
+     */
+    private boolean addBinary(@Nonnull final Vector3i position, @Nonnull final GlmChunk glChunk) throws IOException {
+        // Decode first so a bad payload does not leave a partial chunk in the page
+        final byte[] chunkData;
+        final byte[] chunkHeightData;
+        try {
+            chunkData = BinaryProtocol.decodePayload(glChunk.getChunkData());
+            chunkHeightData = BinaryProtocol.decodePayload(glChunk.getChunkHeightData());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (pageChunks == 0) {
+            startPage();
+        }
+        binaryPage.writeSignedVarInt(position.getX());
+        binaryPage.writeSignedVarInt(position.getY());
+        binaryPage.writeSignedVarInt(position.getZ());
+        binaryPage.writeVarLong(glChunk.getChunkGenerationTime());
+        binaryPage.writeByteArray(chunkData);
+        binaryPage.writeByteArray(chunkHeightData);
+        return true;
+    }
+
+    /**
+     * Sends a chunk which can not be written in binary form to the client in a json page of its own, the same way
+     * chunks which are resolved later are delivered.
+     *
+     * @param position the position of the chunk.
+     * @param glChunk  the chunk to send.
+     */
+    private void sendJsonChunk(@Nonnull final Vector3i position, @Nonnull final GlmChunk glChunk) {
+        pluginInstance.getLogger().warn("Chunk " + position.getX() + ", " + position.getZ() + " in world " + worldId +
+                " is not base64 encoded and is sent as json");
+        final ChunkStream jsonStream = new ChunkStream(pluginInstance, connection, worldId, false);
+        jsonStream.add(position, glChunk);
+        jsonStream.complete(0);
+    }
+
+    /**
+     * @return the size of the current page.
+     */
+    private int getPageSize() {
+        return binary ? binaryPage.size() : pageBuffer.size();
+    }
+
+    /**
+     * Starts a new page.
+     *
+     * @throws IOException if the page could not be written.
+     */
+    private void startPage() throws IOException {
+        pageChunks = 0;
+        pagePositions.clear();
+        if (binary) {
+            binaryPage = new BinaryMessageWriter(Math.min(maxPageSize, 65536));
+            BinaryProtocol.writeHeader(binaryPage, BinaryProtocol.TYPE_CHUNK_PAGE, UUID.fromString(worldId), pageCount, requestId);
+            return;
+        }
+        pageBuffer = new ByteArrayBuilder(Math.min(maxPageSize, 65536));
+        pageGenerator = JsonMessages.JSON_FACTORY.createGenerator(pageBuffer, JsonEncoding.UTF8);
+        // Start json object
+        pageGenerator.writeStartObject();
+        // echo command back
+        pageGenerator.writeStringField("cmd", "getChunkForPosition");
+        // Start data block
+        pageGenerator.writeObjectFieldStart("data");
+        // echo world id
+        pageGenerator.writeStringField("worldId", worldId);
+        pageGenerator.writeNumberField("page", pageCount);
+        // start chunk array
+        pageGenerator.writeArrayFieldStart("chunks");
+    }
+
+    /**
+     * Closes the current page and sends it to the client.
+     *
+     * @param more         true if more pages will follow for this request.
+     * @param queuedChunks the number of chunks queued for loading or generation, only sent on the final page.
+     * @throws IOException if the page could not be written.
+     */
+    private void sendPage(final boolean more, final int queuedChunks) throws IOException {
+        if (binary) {
+            binaryPage.setByte(BinaryProtocol.FLAGS_OFFSET, more ? BinaryProtocol.FLAG_MORE : 0);
+            binaryPage.setInt(BinaryProtocol.CHUNK_COUNT_OFFSET, pageChunks);
+            if (!more) {
+                binaryPage.setInt(BinaryProtocol.TOTAL_CHUNKS_OFFSET, totalChunks);
+                binaryPage.setInt(BinaryProtocol.QUEUED_CHUNKS_OFFSET, queuedChunks);
+            }
+            if (connection.isOpen()) {
+                connection.send(binaryPage.toByteBuffer());
+            }
+            binaryPage = null;
+        } else {
+            // close chunk array
+            pageGenerator.writeEndArray();
+            pageGenerator.writeBooleanField("more", more);
+            if (!more) {
+                pageGenerator.writeNumberField("totalChunks", totalChunks);
+                pageGenerator.writeNumberField("queuedChunks", queuedChunks);
+            }
+            // close data object
+            pageGenerator.writeEndObject();
+            // Close json object
+            pageGenerator.writeEndObject();
+            // Flush data and send to client
+            pageGenerator.close();
+            JsonMessages.sendText(connection, pageBuffer.toByteArray());
+            pageBuffer = null;
+            pageGenerator = null;
+        }
+        // Only chunks which reached the connection count as sent, and only viewport updates skip sent chunks
+        final Viewport viewport = session == null ? null : session.getViewport();
+        if (viewport != null && connection.isOpen()) {
+            for (Vector3i position : pagePositions) {
+                session.markChunkSent(worldId, position.getX(), position.getZ());
+            }
+            // Plain chunk requests may send chunks far outside the viewport
+            session.trimSentChunks(pluginInstance.getConfig().getMaxTrackedChunks(), viewport);
+        }
+        pagePositions.clear();
+        pageChunks = 0;
+        pageCount++;
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import org.java_websocket.WebSocket;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the state of one client connection to the {@link BaseGlmServer}. A session is created when a client connects
+ * and is discarded when the connection is closed.
+ *
+ * @author Tyler Bucher
+ */
+public final class ClientSession {
+
+    /**
+     * The connection this session belongs to.
+     */
+    @Nonnull
+    private final WebSocket connection;
+
+    /**
+     * The wire format and features agreed on with the client.
+     */
+    @Nonnull
+    private volatile Capabilities capabilities = Capabilities.LEGACY;
+
+    /**
+     * The area of the map the client is currently looking at.
+     */
+    @Nullable
+    private volatile Viewport viewport;
+
+    /**
+     * The chunks already sent to the client, per world.
+     */
+    @Nonnull
+    private final Map<String, ChunkSet> sentChunks = new HashMap<>();
+
+    /**
+     * The chunks which were requested for the client through its viewport but not sent yet, per world.
+     */
+    @Nonnull
+    private final Map<String, ChunkSet> pendingChunks = new HashMap<>();
+
+    /**
+     * The last time in milliseconds each command was called by the client.
+     */
+    @Nonnull
+    private final ConcurrentMap<String, Long> commandTimes = new ConcurrentHashMap<>();
+
+    /**
+     * The number of pipelined commands from the client which are waiting or running.
+     */
+    @Nonnull
+    private final AtomicInteger requestsInFlight = new AtomicInteger();
+
+    /**
+     * The rate limit bucket of each command called by the client.
+     */
+    @Nonnull
+    private final ConcurrentMap<String, TokenBucket> commandBuckets = new ConcurrentHashMap<>();
+
+    /**
+     * Encodes the player updates sent to the client.
+     */
+    @Nonnull
+    private final PlayerDeltaEncoder playerDeltaEncoder = new PlayerDeltaEncoder();
+
+    /**
+     * The budget chunk requests are charged against or null if chunk requests are not limited.
+     */
+    @Nullable
+    private final ChunkBudget chunkBudget;
+
+    /**
+     * The map id the client identified itself with or null if it did not.
+     */
+    @Nullable
+    private volatile String mapId;
+
+    /**
+     * The number of times the client was warned for calling commands too fast.
+     */
+    @Nonnull
+    private final AtomicInteger warns = new AtomicInteger();
+
+    /**
+     * Creates a new session for a client connection.
+     *
+     * @param connection  the connection this session belongs to.
+     * @param chunkBudget the budget chunk requests are charged against or null if chunk requests are not limited.
+     */
+    public ClientSession(@Nonnull final WebSocket connection, @Nullable final ChunkBudget chunkBudget) {
+        this.connection = connection;
+        this.chunkBudget = chunkBudget;
+    }
+
+    /**
+     * @return the budget chunk requests are charged against or null if chunk requests are not limited.
+     */
+    @Nullable
+    public ChunkBudget getChunkBudget() {
+        return chunkBudget;
+    }
+
+    /**
+     * @return the connection this session belongs to.
+     */
+    @Nonnull
+    public WebSocket getConnection() {
+        return connection;
+    }
+
+    /**
+     * @return true if chunk data should be sent to the client as binary frames false otherwise.
+     */
+    public boolean isBinaryChunks() {
+        return capabilities.isBinary();
+    }
+
+    /**
+     * @return the wire format and features agreed on with the client.
+     */
+    @Nonnull
+    public Capabilities getCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * @param capabilities the wire format and features agreed on with the client.
+     */
+    public void setCapabilities(@Nonnull final Capabilities capabilities) {
+        this.capabilities = capabilities;
+    }
+
+    /**
+     * @return the map id the client identified itself with or null if it did not.
+     */
+    @Nullable
+    public String getMapId() {
+        return mapId;
+    }
+
+    /**
+     * @param mapId the map id the client identified itself with.
+     */
+    public void setMapId(@Nonnull final String mapId) {
+        this.mapId = mapId;
+    }
+
+    /**
+     * Counts a warning for calling commands too fast.
+     *
+     * @return the number of warnings the client has received.
+     */
+    public int addWarn() {
+        return warns.incrementAndGet();
+    }
+
+    /**
+     * @return the encoder of the player updates sent to the client.
+     */
+    @Nonnull
+    public PlayerDeltaEncoder getPlayerDeltaEncoder() {
+        return playerDeltaEncoder;
+    }
+
+    /**
+     * @return the area of the map the client is currently looking at or null if the client did not send one.
+     */
+    @Nullable
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    /**
+     * @param worldId the {@link java.util.UUID} of the world in string form.
+     * @return true if the client's viewport is in the given world false otherwise.
+     */
+    public boolean isViewingWorld(@Nonnull final String worldId) {
+        final Viewport currentViewport = viewport;
+        return currentViewport != null && currentViewport.getWorldId().equals(worldId);
+    }
+
+    /**
+     * @param viewport the area of the map the client is currently looking at.
+     */
+    public void setViewport(@Nullable final Viewport viewport) {
+        this.viewport = viewport;
+    }
+
+    /**
+     * Claims a chunk for a viewport request. A claimed chunk is not requested again until it is sent or released.
+     *
+     * @param worldId the {@link java.util.UUID} of the world in string form.
+     * @param x       the chunk x position.
+     * @param z       the chunk z position.
+     * @return true if the chunk was neither sent to the client nor already claimed.
+     */
+    public synchronized boolean claimChunk(@Nonnull final String worldId, final int x, final int z) {
+        return !isChunkSent(worldId, x, z) && pendingChunks.computeIfAbsent(worldId, k->new ChunkSet()).add(x, z);
+    }
+
+    /**
+     * Releases a claimed chunk which was not sent, so it is requested again by the next viewport update. Chunks which
+     * were sent are not affected.
+     *
+     * @param worldId the {@link java.util.UUID} of the world in string form.
+     * @param x       the chunk x position.
+     * @param z       the chunk z position.
+     */
+    public synchronized void releaseChunk(@Nonnull final String worldId, final int x, final int z) {
+        removeChunk(pendingChunks, worldId, x, z);
+    }
+
+    /**
+     * Marks a chunk as sent to the client. This should only be called once the chunk was written to the connection.
+     *
+     * @param worldId the {@link java.util.UUID} of the world in string form.
+     * @param x       the chunk x position.
+     * @param z       the chunk z position.
+     * @return true if the chunk was not sent to the client before.
+     */
+    public synchronized boolean markChunkSent(@Nonnull final String worldId, final int x, final int z) {
+        removeChunk(pendingChunks, worldId, x, z);
+        return sentChunks.computeIfAbsent(worldId, k->new ChunkSet()).add(x, z);
+    }
+
+    /**
+     * Forgets that a chunk was sent or claimed, so it is sent again the next time it is requested through the viewport.
+     *
+     * @param worldId the {@link java.util.UUID} of the world in string form.
+     * @param x       the chunk x position.
+     * @param z       the chunk z position.
+     */
+    public synchronized void unmarkChunkSent(@Nonnull final String worldId, final int x, final int z) {
+        removeChunk(pendingChunks, worldId, x, z);
+        removeChunk(sentChunks, worldId, x, z);
+    }
+
+    /**
+     * Removes a chunk from one of the per world chunk sets.
+     *
+     * @param chunkSets the chunk sets per world.
+     * @param worldId   the {@link java.util.UUID} of the world in string form.
+     * @param x         the chunk x position.
+     * @param z         the chunk z position.
+     */
+    private static void removeChunk(@Nonnull final Map<String, ChunkSet> chunkSets, @Nonnull final String worldId,
+                                    final int x, final int z) {
+        final ChunkSet chunkSet = chunkSets.get(worldId);
+        if (chunkSet != null && chunkSet.remove(x, z) && chunkSet.size() == 0) {
+            chunkSets.remove(worldId);
+        }
+    }
+
+    /**
+     * Checks if a chunk was sent to the client.
+     *
+     * @param worldId the {@link java.util.UUID} of the world in string form.
+     * @param x       the chunk x position.
+     * @param z       the chunk z position.
+     * @return true if the chunk was sent to the client.
+     */
+    public synchronized boolean isChunkSent(@Nonnull final String worldId, final int x, final int z) {
+        final ChunkSet chunkSet = sentChunks.get(worldId);
+        return chunkSet != null && chunkSet.contains(x, z);
+    }
+
+    /**
+     * Forgets every chunk sent to the client for a world.
+     *
+     * @param worldId the {@link java.util.UUID} of the world in string form.
+     */
+    public synchronized void clearSentChunks(@Nonnull final String worldId) {
+        sentChunks.remove(worldId);
+    }
+
+    /**
+     * Keeps the number of tracked chunks below a limit. Other worlds are dropped first and then every region which is
+     * not close to the viewport. Forgotten chunks are sent again if the client asks for them.
+     *
+     * @param maxChunks the maximum number of chunks to track.
+     * @param viewport  the current viewport of the client.
+     */
+    public synchronized void trimSentChunks(final int maxChunks, @Nonnull final Viewport viewport) {
+        if (getSentChunkCount() <= maxChunks) {
+            return;
+        }
+        final Iterator<String> iterator = sentChunks.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (!iterator.next().equals(viewport.getWorldId())) {
+                iterator.remove();
+            }
+        }
+        final ChunkSet chunkSet = sentChunks.get(viewport.getWorldId());
+        if (chunkSet != null && chunkSet.size() > maxChunks) {
+            chunkSet.retainRegions(viewport.getMinX(), viewport.getMinZ(), viewport.getMaxX(), viewport.getMaxZ());
+        }
+    }
+
+    /**
+     * @return the number of chunks tracked as sent to the client.
+     */
+    public synchronized int getSentChunkCount() {
+        int count = 0;
+        for (ChunkSet chunkSet : sentChunks.values()) {
+            count += chunkSet.size();
+        }
+        return count;
+    }
+
+    /**
+     * Records a call to a command if the client respected the interval of the command.
+     *
+     * @param command  the name of the command.
+     * @param interval the minimum time in milliseconds between calls of the command.
+     * @return true if the call was allowed false if the client called the command too soon.
+     */
+    public boolean tryCallCommand(@Nonnull final String command, final long interval) {
+        if (interval <= 0) {
+            return true;
+        }
+        final long now = System.currentTimeMillis();
+        final Long lastCall = commandTimes.get(command);
+        if (lastCall != null && now - lastCall < interval) {
+            return false;
+        }
+        // Another call of the same command may have been recorded in the mean time
+        return lastCall == null ? commandTimes.putIfAbsent(command, now) == null : commandTimes.replace(command, lastCall, now);
+    }
+
+    /**
+     * Takes a token from the rate limit bucket of a command.
+     *
+     * @param command   the name of the command.
+     * @param rateLimit the rate limit of the command.
+     * @return 0 if the call was allowed, otherwise the time in nanoseconds until the client may call the command again.
+     */
+    public long tryAcquireCommand(@Nonnull final String command, @Nonnull final RateLimit rateLimit) {
+        return rateLimit.isEnabled() ? commandBuckets.computeIfAbsent(command, k->rateLimit.createBucket()).tryAcquire(1) : 0;
+    }
+
+    /**
+     * Reserves a slot for a pipelined command.
+     *
+     * @param maxRequests the maximum number of pipelined commands allowed at once.
+     * @return true if a slot was reserved false if the client has too many commands in flight.
+     */
+    public boolean tryStartRequest(final int maxRequests) {
+        if (requestsInFlight.incrementAndGet() > maxRequests) {
+            requestsInFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Releases a slot reserved with {@link #tryStartRequest(int)}.
+     */
+    public void finishRequest() {
+        requestsInFlight.decrementAndGet();
+    }
+}
@@ -24,17 +24,12 @@
 package net.reallifegames.glm.sponge.server;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import net.reallifegames.glm.module.SqlModule;
 import net.reallifegames.glm.server.CommandRegistrar;
+import net.reallifegames.glm.sponge.BanIndex;
 import net.reallifegames.glm.sponge.GlMap;
 import org.java_websocket.WebSocket;
 
 import javax.annotation.Nonnull;
-import java.net.InetSocketAddress;
-import java.sql.Connection;
-import java.sql.SQLException;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  * Maintains control over all gl server commands.
@@ -55,12 +50,6 @@ public class CommandRegistrarWb extends CommandRegistrar {
     @Nonnull
     private final GlMap pluginInstance;
 
-    /**
-     * The map of commands to command handler objects.
-     */
-    @Nonnull
-    private final ConcurrentMap<InetSocketAddress, Integer> warnMap;
-
     /**
      * Creates a new gl server command registrar.
      *
@@ -69,28 +58,26 @@ public class CommandRegistrarWb extends CommandRegistrar {
     CommandRegistrarWb(@Nonnull final GlMap pluginInstance) {
         super();
         this.pluginInstance = pluginInstance;
-        warnMap = new ConcurrentHashMap<>();
     }
 
     @Override
     protected void punishClient(@Nonnull final WebSocket connection, @Nonnull final String command, @Nonnull final JsonNode commandNode) {
-        Integer strike = warnMap.getOrDefault(connection.getRemoteSocketAddress(), 0);
-        warnMap.put(connection.getRemoteSocketAddress(), ++strike);
+        // Warnings live in the session so they are dropped with the connection
+        final ClientSession session = pluginInstance.getBaseGlmServer().getSession(connection).orElse(null);
+        if (session == null) {
+            return;
+        }
+        final int strike = session.addWarn();
         if (strike > pluginInstance.getConfig().getMaxWarns()) {
-            warnMap.put(connection.getRemoteSocketAddress(), 0);
             // https://developer.mozilla.org/en-US/docs/Web/API/CloseEvent
             connection.close(1008, CommandRegistrarWb.BAN_MESSAGE);
-            // Add ban to sql table
-            try (Connection databaseConnection = pluginInstance.getDataSource().getConnection()) {
-                final String hostNameString = connection.getRemoteSocketAddress().getHostString();
-                String uuid = pluginInstance.getClientMapIdMap().get(hostNameString);
-                if(uuid == null) {
-                    uuid = pluginInstance.getConfig().getUuidList().get(0);
-                }
-                SqlModule.insertBan(databaseConnection, hostNameString, uuid);
-            } catch (SQLException e) {
-                pluginInstance.getLogger().error("Error getting sql database: ", e);
+            // Ban right away, the sql table is updated in the background
+            final String hostNameString = connection.getRemoteSocketAddress().getHostString();
+            String uuid = session.getMapId();
+            if(uuid == null) {
+                uuid = pluginInstance.getConfig().getUuidList().get(0);
             }
+            BanIndex.ban(hostNameString, uuid);
         }
         connection.send("{\"cmd\": \"commandInterval\", \"data\": {\"command\": \"" + command + "\", \"interval\": \"" + this.commandMap.get(command).getInterval() + "\"}}");
     }
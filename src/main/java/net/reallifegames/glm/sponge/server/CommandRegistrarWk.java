@@ -30,9 +30,8 @@ import net.reallifegames.glm.sponge.GlMap;
 import org.java_websocket.WebSocket;
 
 import javax.annotation.Nonnull;
-import java.net.InetSocketAddress;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Maintains control over all gl server commands.
@@ -53,12 +52,6 @@ public class CommandRegistrarWk extends CommandRegistrar {
     @Nonnull
     private final GlMap pluginInstance;
 
-    /**
-     * The map of commands to command handler objects.
-     */
-    @Nonnull
-    private final ConcurrentMap<InetSocketAddress, Integer> warnMap;
-
     /**
      * Creates a new gl server command registrar.
      *
@@ -67,18 +60,56 @@ public class CommandRegistrarWk extends CommandRegistrar {
     CommandRegistrarWk(@Nonnull final GlMap pluginInstance) {
         super();
         this.pluginInstance = pluginInstance;
-        warnMap = new ConcurrentHashMap<>();
     }
 
     @Override
     protected void punishClient(@Nonnull final WebSocket connection, @Nonnull final String command, @Nonnull final JsonNode commandNode) {
-        Integer strike = warnMap.getOrDefault(connection.getRemoteSocketAddress(), 0);
-        warnMap.put(connection.getRemoteSocketAddress(), ++strike);
+        warnClient(connection, command);
+    }
+
+    /**
+     * Gets a registered command.
+     *
+     * @param command the name of the command.
+     * @return the command handler or null if no command is registered with the name.
+     */
+    @Nullable
+    WsServerCommand getCommand(@Nonnull final String command) {
+        return this.commandMap.get(command);
+    }
+
+    /**
+     * Warns a client which called a command faster than its interval and kicks it after too many warnings.
+     *
+     * @param connection the {@link WebSocket} connection.
+     * @param command    the name of the command.
+     */
+    void warnClient(@Nonnull final WebSocket connection, @Nonnull final String command) {
+        // Warnings live in the session so they are dropped with the connection
+        final ClientSession session = pluginInstance.getBaseGlmServer().getSession(connection).orElse(null);
+        if (session == null) {
+            return;
+        }
+        final int strike = session.addWarn();
         if (strike > pluginInstance.getConfig().getMaxWarns()) {
-            warnMap.put(connection.getRemoteSocketAddress(), 0);
             // https://developer.mozilla.org/en-US/docs/Web/API/CloseEvent
             connection.close(1008, CommandRegistrarWk.KICK_MESSAGE);
         }
         connection.send("{\"cmd\": \"commandInterval\", \"data\": {\"command\": \"" + command + "\", \"interval\": \"" + this.commandMap.get(command).getInterval() + "\"}}");
     }
+
+    /**
+     * Tells a client that a command was dropped because the client is over the command's rate limit. Unlike
+     * {@link #warnClient(WebSocket, String)} this does not count towards a kick, since a client can not know how full
+     * its bucket is.
+     *
+     * @param connection the {@link WebSocket} connection.
+     * @param command    the name of the command.
+     * @param waitTime   the time in nanoseconds until the client may call the command again.
+     */
+    void sendRateLimited(@Nonnull final WebSocket connection, @Nonnull final String command, final long waitTime) {
+        // Round up so a client retrying after the given time is never dropped again
+        final long retryAfter = TimeUnit.NANOSECONDS.toMillis(waitTime + 999_999L);
+        connection.send("{\"cmd\": \"rateLimited\", \"data\": {\"command\": \"" + command + "\", \"retryAfter\": " + retryAfter + "}}");
+    }
 }
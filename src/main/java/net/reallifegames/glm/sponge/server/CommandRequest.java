@@ -0,0 +1,309 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A client command read with the jackson streaming api. Only the top level fields are read up front, the {@code data}
+ * value is kept as a slice of the original message and is only parsed when a handler asks for it. Position arrays can
+ * be read straight into a primitive array without building a json tree.
+ *
+ * @author Tyler Bucher
+ */
+public final class CommandRequest {
+
+    /**
+     * The longest request id string which is accepted.
+     */
+    private static final int MAX_REQUEST_ID_LENGTH = 64;
+
+    /**
+     * Mapper used when a handler needs a json tree.
+     */
+    @Nonnull
+    private static final ObjectMapper objectMapper = new ObjectMapper(JsonMessages.JSON_FACTORY);
+
+    /**
+     * The original message.
+     */
+    @Nonnull
+    private final String message;
+
+    /**
+     * The name of the command.
+     */
+    @Nullable
+    private String command;
+
+    /**
+     * The world id sent with the command.
+     */
+    @Nullable
+    private String worldId;
+
+    /**
+     * The data type sent with the command.
+     */
+    @Nullable
+    private String dataType;
+
+    /**
+     * The request id sent with the command as a json value.
+     */
+    @Nullable
+    private String requestId;
+
+    /**
+     * The start offset of the data value in the message or -1 if there is no data.
+     */
+    private int dataStart = -1;
+
+    /**
+     * The end offset of the data value in the message.
+     */
+    private int dataEnd = -1;
+
+    /**
+     * The full message as a json tree, only built if a handler asks for it.
+     */
+    @Nullable
+    private JsonNode commandNode;
+
+    /**
+     * Creates a new command request.
+     *
+     * @param message the original message.
+     */
+    private CommandRequest(@Nonnull final String message) {
+        this.message = message;
+    }
+
+    /**
+     * Reads the top level fields of a client message.
+     *
+     * @param message the message sent by the client.
+     * @return the command request.
+     *
+     * @throws IOException if the message is not a json object.
+     */
+    @Nonnull
+    public static CommandRequest parse(@Nonnull final String message) throws IOException {
+        final CommandRequest request = new CommandRequest(message);
+        try (JsonParser parser = JsonMessages.JSON_FACTORY.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Command is not a json object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String fieldName = parser.getCurrentName();
+                final JsonToken valueToken = parser.nextToken();
+                switch (fieldName) {
+                    case "cmd":
+                        request.command = readString(parser, valueToken);
+                        break;
+                    case "worldId":
+                        request.worldId = readString(parser, valueToken);
+                        break;
+                    case "dataType":
+                        request.dataType = readString(parser, valueToken);
+                        break;
+                    case "requestId":
+                        request.requestId = readRequestId(parser, valueToken);
+                        break;
+                    case "data":
+                        // Remember where the data is and skip over it
+                        request.dataStart = (int) parser.getTokenLocation().getCharOffset();
+                        parser.skipChildren();
+                        request.dataEnd = (int) parser.getCurrentLocation().getCharOffset();
+                        break;
+                    default:
+                        if (valueToken.isStructStart()) {
+                            parser.skipChildren();
+                        }
+                }
+            }
+        }
+        return request;
+    }
+
+    /**
+     * Reads a scalar field as a string. Objects and arrays are skipped and not accepted.
+     *
+     * @param parser     the parser positioned at the value.
+     * @param valueToken the token of the value.
+     * @return the value as a string or null if it is not a scalar.
+     *
+     * @throws IOException if the value could not be read.
+     */
+    @Nullable
+    private static String readString(@Nonnull final JsonParser parser, @Nonnull final JsonToken valueToken) throws IOException {
+        if (valueToken.isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getValueAsString();
+    }
+
+    /**
+     * Reads a request id. Only strings of up to {@link #MAX_REQUEST_ID_LENGTH} characters and integers are accepted.
+     *
+     * @param parser     the parser positioned at the request id.
+     * @param valueToken the token of the request id.
+     * @return the request id as a json value or null if it is not accepted.
+     *
+     * @throws IOException if the request id could not be read.
+     */
+    @Nullable
+    private static String readRequestId(@Nonnull final JsonParser parser, @Nonnull final JsonToken valueToken) throws IOException {
+        if (valueToken == JsonToken.VALUE_NUMBER_INT) {
+            return Long.toString(parser.getLongValue());
+        }
+        if (valueToken == JsonToken.VALUE_STRING) {
+            final String text = parser.getText();
+            if (text.length() <= MAX_REQUEST_ID_LENGTH) {
+                return '"' + new String(JsonStringEncoder.getInstance().quoteAsString(text)) + '"';
+            }
+        } else if (valueToken.isStructStart()) {
+            parser.skipChildren();
+        }
+        return null;
+    }
+
+    /**
+     * @return the name of the command or null if it was not sent.
+     */
+    @Nullable
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * @return the world id sent with the command or null if it was not sent.
+     */
+    @Nullable
+    public String getWorldId() {
+        return worldId;
+    }
+
+    /**
+     * @return the data type sent with the command or null if it was not sent.
+     */
+    @Nullable
+    public String getDataType() {
+        return dataType;
+    }
+
+    /**
+     * @return the request id sent with the command as a json value or null if it was not sent.
+     */
+    @Nullable
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @return true if the command has a data value.
+     */
+    public boolean hasData() {
+        return dataStart >= 0;
+    }
+
+    /**
+     * @return the original message.
+     */
+    @Nonnull
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the full message as a json tree for handlers which need one. The tree is only built once.
+     *
+     * @return the message as a json tree.
+     *
+     * @throws IOException if the message could not be parsed.
+     */
+    @Nonnull
+    public JsonNode getCommandNode() throws IOException {
+        if (commandNode == null) {
+            commandNode = objectMapper.readTree(message);
+        }
+        return commandNode;
+    }
+
+    /**
+     * Reads a data array of {@code {"x": .., "y": .., "z": ..}} objects into one primitive array. Missing coordinates
+     * are read as 0.
+     *
+     * @return the positions as x, y and z triples or null if the data is not an array.
+     *
+     * @throws IOException if the data could not be parsed.
+     */
+    @Nullable
+    public double[] readPositions() throws IOException {
+        if (!hasData()) {
+            return null;
+        }
+        try (JsonParser parser = JsonMessages.JSON_FACTORY.createParser(message.substring(dataStart, dataEnd))) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return null;
+            }
+            double[] positions = new double[48];
+            int size = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (size + 3 > positions.length) {
+                    positions = Arrays.copyOf(positions, positions.length * 2);
+                }
+                positions[size] = 0;
+                positions[size + 1] = 0;
+                positions[size + 2] = 0;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String fieldName = parser.getCurrentName();
+                    final JsonToken valueToken = parser.nextToken();
+                    if (valueToken.isNumeric() && fieldName.length() == 1 && fieldName.charAt(0) >= 'x' && fieldName.charAt(0) <= 'z') {
+                        positions[size + fieldName.charAt(0) - 'x'] = parser.getDoubleValue();
+                    } else if (valueToken.isStructStart()) {
+                        parser.skipChildren();
+                    }
+                }
+                size += 3;
+            }
+            return size == positions.length ? positions : Arrays.copyOf(positions, size);
+        }
+    }
+}
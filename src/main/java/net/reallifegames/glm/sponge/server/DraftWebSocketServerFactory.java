@@ -0,0 +1,88 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import org.java_websocket.WebSocketAdapter;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.WebSocketServerFactory;
+import org.java_websocket.drafts.Draft;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+/**
+ * Wraps another {@link WebSocketServerFactory} and replaces the drafts offered to every new connection. This lets the
+ * {@link BaseGlmServer} offer extensions such as permessage-deflate on top of the plain or ssl factory.
+ *
+ * @author Tyler Bucher
+ */
+public final class DraftWebSocketServerFactory implements WebSocketServerFactory {
+
+    /**
+     * The factory which creates the sockets and channels.
+     */
+    @Nonnull
+    private final WebSocketServerFactory factory;
+
+    /**
+     * The drafts offered to every new connection.
+     */
+    @Nonnull
+    private final List<Draft> drafts;
+
+    /**
+     * Creates a new factory.
+     *
+     * @param factory the factory which creates the sockets and channels.
+     * @param drafts  the drafts offered to every new connection.
+     */
+    public DraftWebSocketServerFactory(@Nonnull final WebSocketServerFactory factory, @Nonnull final List<Draft> drafts) {
+        this.factory = factory;
+        this.drafts = drafts;
+    }
+
+    @Override
+    public WebSocketImpl createWebSocket(final WebSocketAdapter adapter, final Draft draft) {
+        return factory.createWebSocket(adapter, drafts);
+    }
+
+    @Override
+    public WebSocketImpl createWebSocket(final WebSocketAdapter adapter, final List<Draft> drafts) {
+        return factory.createWebSocket(adapter, this.drafts);
+    }
+
+    @Override
+    public ByteChannel wrapChannel(final SocketChannel channel, final SelectionKey key) throws IOException {
+        return factory.wrapChannel(channel, key);
+    }
+
+    @Override
+    public void close() {
+        factory.close();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.framing.Framedata;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+/**
+ * The RFC 6455 draft with the {@link GlmDeflateExtension}. Java-WebSocket 1.3.7 lets extensions change the payload of
+ * a frame but does not write the RSV1 bit when the frame is built, so this draft sets it for compressed frames.
+ *
+ * @author Tyler Bucher
+ */
+public final class GlmDeflateDraft extends Draft_6455 {
+
+    /**
+     * The RSV1 bit of the first byte of a frame.
+     */
+    private static final byte RSV1 = 0x40;
+
+    /**
+     * The extension offered to clients, copied for every connection.
+     */
+    @Nonnull
+    private final GlmDeflateExtension deflateExtension;
+
+    /**
+     * Creates a new draft which offers permessage-deflate.
+     *
+     * @param deflateExtension the extension offered to clients.
+     */
+    public GlmDeflateDraft(@Nonnull final GlmDeflateExtension deflateExtension) {
+        super(Collections.singletonList(deflateExtension));
+        this.deflateExtension = deflateExtension;
+    }
+
+    @Override
+    public ByteBuffer createBinaryFrame(@Nonnull final Framedata framedata) {
+        final ByteBuffer frame = super.createBinaryFrame(framedata);
+        if (framedata.isRSV1()) {
+            frame.put(frame.position(), (byte) (frame.get(frame.position()) | RSV1));
+        }
+        return frame;
+    }
+
+    @Override
+    public Draft copyInstance() {
+        return new GlmDeflateDraft((GlmDeflateExtension) deflateExtension.copyInstance());
+    }
+}
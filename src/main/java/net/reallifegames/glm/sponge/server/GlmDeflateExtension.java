@@ -0,0 +1,325 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.exceptions.InvalidFrameException;
+import org.java_websocket.extensions.CompressionExtension;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.ControlFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.FramedataImpl1;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The permessage-deflate extension from RFC 7692. Java-WebSocket 1.3.7 has no built in version, so the server offers
+ * this one through a {@link GlmDeflateDraft}, which writes the RSV1 bit of compressed frames.
+ * <p>
+ * The server always resets its compression context after every message. Frames are built outside of the write lock of
+ * the connection, so two threads sending to the same client could reach the wire in a different order than they were
+ * compressed. Messages which are compressed on their own can be sent in any order.
+ *
+ * @author Tyler Bucher
+ */
+public final class GlmDeflateExtension extends CompressionExtension {
+
+    /**
+     * The name of the extension in the handshake.
+     */
+    @Nonnull
+    private static final String EXTENSION_NAME = "permessage-deflate";
+
+    /**
+     * The bytes removed from the end of every compressed message and added back before it is decompressed.
+     */
+    @Nonnull
+    private static final byte[] EMPTY_BLOCK = {0x00, 0x00, (byte) 0xFF, (byte) 0xFF};
+
+    /**
+     * The largest window the {@link Deflater} uses in bits.
+     */
+    private static final int MAX_WINDOW_BITS = 15;
+
+    /**
+     * The largest size in bytes a client message may be decompressed to.
+     */
+    private static final int MAX_MESSAGE_SIZE = 1024 * 1024;
+
+    /**
+     * The deflate compression level from 0 to 9.
+     */
+    private final int compressionLevel;
+
+    /**
+     * The minimum size in bytes of a message before it is compressed.
+     */
+    private final int threshold;
+
+    /**
+     * True if clients should be asked to reset their compression context after every message.
+     */
+    private final boolean clientNoContextTakeover;
+
+    /**
+     * True if the client agreed to reset its compression context after every message.
+     */
+    private boolean negotiatedClientNoContextTakeover;
+
+    /**
+     * Compresses messages sent to the client.
+     */
+    @Nonnull
+    private final Deflater deflater;
+
+    /**
+     * Decompresses messages sent by the client.
+     */
+    @Nonnull
+    private final Inflater inflater = new Inflater(true);
+
+    /**
+     * True if the message currently being received is compressed.
+     */
+    private boolean inflating;
+
+    /**
+     * The decompressed size in bytes of the message currently being received.
+     */
+    private int inflatedSize;
+
+    /**
+     * Creates a new permessage-deflate extension.
+     *
+     * @param compressionLevel        the deflate compression level from 0 to 9.
+     * @param threshold               the minimum size in bytes of a message before it is compressed.
+     * @param clientNoContextTakeover true if clients should reset their compression context after every message.
+     */
+    public GlmDeflateExtension(final int compressionLevel, final int threshold, final boolean clientNoContextTakeover) {
+        this.compressionLevel = Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, compressionLevel));
+        this.threshold = Math.max(0, threshold);
+        this.clientNoContextTakeover = clientNoContextTakeover;
+        this.deflater = new Deflater(this.compressionLevel, true);
+    }
+
+    @Override
+    public boolean acceptProvidedExtensionAsServer(@Nullable final String inputExtension) {
+        if (inputExtension == null) {
+            return false;
+        }
+        // Clients may offer several configurations, use the first one we can honor
+        for (String offer : inputExtension.split(",")) {
+            final String[] parameters = offer.split(";");
+            if (!EXTENSION_NAME.equalsIgnoreCase(parameters[0].trim())) {
+                continue;
+            }
+            boolean accepted = true;
+            boolean requestedClientNoContextTakeover = false;
+            for (int i = 1; i < parameters.length && accepted; i++) {
+                final String[] parameter = parameters[i].split("=", 2);
+                final String name = parameter[0].trim().toLowerCase();
+                final String value = parameter.length > 1 ? parameter[1].trim().replace("\"", "") : null;
+                switch (name) {
+                    case "server_no_context_takeover":
+                        // The server never takes over its context
+                        break;
+                    case "client_no_context_takeover":
+                        requestedClientNoContextTakeover = true;
+                        break;
+                    case "server_max_window_bits":
+                        // The deflater always uses the largest window
+                        accepted = value != null && parseWindowBits(value) == MAX_WINDOW_BITS;
+                        break;
+                    case "client_max_window_bits":
+                        // The inflater handles every window size
+                        accepted = value == null || parseWindowBits(value) != -1;
+                        break;
+                    default:
+                        accepted = false;
+                }
+            }
+            if (accepted) {
+                negotiatedClientNoContextTakeover = clientNoContextTakeover || requestedClientNoContextTakeover;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean acceptProvidedExtensionAsClient(@Nullable final String inputExtension) {
+        // Only the server side of the extension is supported
+        return false;
+    }
+
+    @Override
+    public String getProvidedExtensionAsServer() {
+        return EXTENSION_NAME + "; server_no_context_takeover" +
+                (negotiatedClientNoContextTakeover ? "; client_no_context_takeover" : "");
+    }
+
+    @Override
+    public String getProvidedExtensionAsClient() {
+        return "";
+    }
+
+    @Override
+    public void isFrameValid(@Nonnull final Framedata inputFrame) throws InvalidDataException {
+        super.isFrameValid(inputFrame);
+        // Only the first frame of a message marks it as compressed
+        if (inputFrame.getOpcode() == Framedata.Opcode.CONTINUOUS && inputFrame.isRSV1()) {
+            throw new InvalidFrameException("RSV1 set on a continuation frame");
+        }
+    }
+
+    @Override
+    public synchronized void encodeFrame(@Nonnull final Framedata inputFrame) {
+        // Only whole messages are compressed, fragmented messages are sent as they are
+        if (!(inputFrame instanceof FramedataImpl1) || inputFrame instanceof ControlFrame || !inputFrame.isFin() ||
+                inputFrame.getOpcode() == Framedata.Opcode.CONTINUOUS) {
+            return;
+        }
+        final ByteBuffer payload = inputFrame.getPayloadData();
+        if (payload.remaining() < threshold) {
+            return;
+        }
+        final byte[] message = new byte[payload.remaining()];
+        payload.duplicate().get(message);
+        deflater.setInput(message);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, message.length / 2));
+        final byte[] buffer = new byte[Math.min(8192, Math.max(64, message.length))];
+        int length;
+        do {
+            length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            output.write(buffer, 0, length);
+        } while (length == buffer.length || !deflater.needsInput());
+        deflater.reset();
+        // Drop the empty block the sync flush ends with
+        final byte[] compressed = output.toByteArray();
+        final FramedataImpl1 frame = (FramedataImpl1) inputFrame;
+        frame.setPayload(ByteBuffer.wrap(compressed, 0, endsWithEmptyBlock(compressed) ?
+                compressed.length - EMPTY_BLOCK.length : compressed.length).slice());
+        frame.setRSV1(true);
+    }
+
+    @Override
+    public void decodeFrame(@Nonnull final Framedata inputFrame) throws InvalidDataException {
+        if (inputFrame instanceof ControlFrame || !(inputFrame instanceof FramedataImpl1)) {
+            return;
+        }
+        // The first frame of a message decides if the whole message is compressed
+        if (inputFrame.getOpcode() != Framedata.Opcode.CONTINUOUS) {
+            inflating = inputFrame.isRSV1();
+            inflatedSize = 0;
+        }
+        if (!inflating) {
+            return;
+        }
+        final ByteBuffer payload = inputFrame.getPayloadData();
+        final byte[] message = new byte[payload.remaining() + (inputFrame.isFin() ? EMPTY_BLOCK.length : 0)];
+        payload.duplicate().get(message, 0, payload.remaining());
+        if (inputFrame.isFin()) {
+            System.arraycopy(EMPTY_BLOCK, 0, message, payload.remaining(), EMPTY_BLOCK.length);
+        }
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(message.length * 2);
+        final byte[] buffer = new byte[8192];
+        try {
+            inflater.setInput(message);
+            int length;
+            while ((length = inflater.inflate(buffer)) > 0) {
+                inflatedSize += length;
+                if (inflatedSize > MAX_MESSAGE_SIZE) {
+                    throw new InvalidDataException(CloseFrame.TOOBIG, "Message too big");
+                }
+                output.write(buffer, 0, length);
+            }
+        } catch (DataFormatException e) {
+            throw new InvalidDataException(CloseFrame.POLICY_VALIDATION, e.getMessage());
+        }
+        if (inputFrame.isFin() && negotiatedClientNoContextTakeover) {
+            inflater.reset();
+        }
+        final FramedataImpl1 frame = (FramedataImpl1) inputFrame;
+        frame.setPayload(ByteBuffer.wrap(output.toByteArray()));
+        frame.setRSV1(false);
+    }
+
+    @Override
+    public synchronized void reset() {
+        deflater.reset();
+        inflater.reset();
+        inflating = false;
+        inflatedSize = 0;
+    }
+
+    @Override
+    public IExtension copyInstance() {
+        return new GlmDeflateExtension(compressionLevel, threshold, clientNoContextTakeover);
+    }
+
+    @Override
+    public String toString() {
+        return "GlmDeflateExtension";
+    }
+
+    /**
+     * Parses a max window bits parameter.
+     *
+     * @param value the value of the parameter.
+     * @return the number of bits from 8 to 15 or -1 if the value is not valid.
+     */
+    private static int parseWindowBits(@Nonnull final String value) {
+        try {
+            final int bits = Integer.parseInt(value);
+            return bits >= 8 && bits <= MAX_WINDOW_BITS ? bits : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Checks if compressed data ends with the empty block of a sync flush.
+     *
+     * @param compressed the compressed data.
+     * @return true if the data ends with the empty block.
+     */
+    private static boolean endsWithEmptyBlock(@Nonnull final byte[] compressed) {
+        if (compressed.length < EMPTY_BLOCK.length) {
+            return false;
+        }
+        for (int i = 0; i < EMPTY_BLOCK.length; i++) {
+            if (compressed[compressed.length - EMPTY_BLOCK.length + i] != EMPTY_BLOCK[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
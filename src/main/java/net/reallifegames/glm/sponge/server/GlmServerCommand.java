@@ -23,10 +23,13 @@
  */
 package net.reallifegames.glm.sponge.server;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import net.reallifegames.glm.api.server.WsServerCommand;
 import net.reallifegames.glm.sponge.GlMap;
+import org.java_websocket.WebSocket;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
 
 public abstract class GlmServerCommand implements WsServerCommand {
 
@@ -44,4 +47,52 @@ public abstract class GlmServerCommand implements WsServerCommand {
     public GlmServerCommand(@Nonnull final GlMap pluginInstance) {
         this.pluginInstance = pluginInstance;
     }
+
+    /**
+     * Handles a command read by the streaming dispatcher of the {@link BaseGlmServer}. Commands which can work from the
+     * streamed fields should override this, by default the message is parsed into a json tree and passed to
+     * {@link #handle(WebSocket, JsonNode)}.
+     *
+     * @param connection the {@link WebSocket} connection.
+     * @param request    the command sent by the client.
+     */
+    public void handle(@Nonnull final WebSocket connection, @Nonnull final CommandRequest request) {
+        try {
+            handle(connection, request.getCommandNode());
+        } catch (IOException e) {
+            connection.send("{\"error\": \"Incomplete request\"}");
+        }
+    }
+
+    /**
+     * Serializes a json message with the shared {@link JsonMessages} buffers and sends it to the client. If the message
+     * could not be written the client is sent an internal error instead.
+     *
+     * @param connection the {@link WebSocket} connection.
+     * @param jsonWriter writes the content of the message.
+     */
+    protected void sendJson(@Nonnull final WebSocket connection, @Nonnull final JsonMessages.JsonWriter jsonWriter) {
+        try {
+            JsonMessages.send(connection, jsonWriter);
+        } catch (IOException e1) {
+            pluginInstance.getLogger().error("Json error", e1);
+            connection.send("{\"error\": \"Internal error\"}");
+        }
+    }
+
+    /**
+     * Sends a cached json response to the client, building it first if it is out of date. If the response could not be
+     * written the client is sent an internal error instead.
+     *
+     * @param connection     the {@link WebSocket} connection.
+     * @param cachedResponse the response to send.
+     */
+    protected void sendCached(@Nonnull final WebSocket connection, @Nonnull final CachedResponse cachedResponse) {
+        try {
+            JsonMessages.sendText(connection, cachedResponse.get());
+        } catch (IOException e1) {
+            pluginInstance.getLogger().error("Json error", e1);
+            connection.send("{\"error\": \"Internal error\"}");
+        }
+    }
 }
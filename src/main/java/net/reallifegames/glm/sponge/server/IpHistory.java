@@ -0,0 +1,149 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import javax.annotation.Nonnull;
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the state kept for one client ip address across connections.
+ *
+ * @author Tyler Bucher
+ */
+class IpRecord {
+
+    /**
+     * The rate limit bucket of all messages from the address.
+     */
+    @Nonnull
+    private final TokenBucket messageBucket;
+
+    /**
+     * The last time in milliseconds the address was seen.
+     */
+    private volatile long lastSeen;
+
+    /**
+     * Creates a new {@link IpRecord} with the given information.
+     *
+     * @param messageBucket the rate limit bucket of all messages from the address.
+     */
+    IpRecord(@Nonnull final TokenBucket messageBucket) {
+        this.messageBucket = messageBucket;
+        this.lastSeen = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the rate limit bucket of all messages from the address.
+     */
+    @Nonnull
+    public TokenBucket getMessageBucket() {
+        return messageBucket;
+    }
+
+    /**
+     * @return the last time in milliseconds the address was seen.
+     */
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * Marks the address as seen now.
+     */
+    public void touch() {
+        lastSeen = System.currentTimeMillis();
+    }
+}
+
+/**
+ * The state kept per client ip address which has to outlive a single connection, so a client can not reset it by
+ * reconnecting. Addresses which were not seen for the configured lifetime are forgotten by {@link #expire()}, which
+ * keeps the history bounded by the number of addresses seen within that time.
+ *
+ * @author Tyler Bucher
+ */
+public final class IpHistory {
+
+    /**
+     * The state of every address seen within the lifetime.
+     */
+    @Nonnull
+    private final ConcurrentMap<InetAddress, IpRecord> records = new ConcurrentHashMap<>();
+
+    /**
+     * The rate limit of all messages from one address.
+     */
+    @Nonnull
+    private final RateLimit messageRateLimit;
+
+    /**
+     * The time in milliseconds an address is remembered after it was last seen.
+     */
+    private final long lifetime;
+
+    /**
+     * Creates a new empty history.
+     *
+     * @param messageRateLimit the rate limit of all messages from one address.
+     * @param lifetime         the time in milliseconds an address is remembered after it was last seen.
+     */
+    public IpHistory(@Nonnull final RateLimit messageRateLimit, final long lifetime) {
+        this.messageRateLimit = messageRateLimit;
+        this.lifetime = lifetime;
+    }
+
+    /**
+     * Takes a token from the message bucket of an address.
+     *
+     * @param address the ip address of the client.
+     * @return true if the message was allowed false if the address is over the rate limit.
+     */
+    public boolean tryAcquireMessage(@Nonnull final InetAddress address) {
+        if (!messageRateLimit.isEnabled()) {
+            return true;
+        }
+        final IpRecord record = records.computeIfAbsent(address, k->new IpRecord(messageRateLimit.createBucket()));
+        record.touch();
+        return record.getMessageBucket().tryAcquire();
+    }
+
+    /**
+     * Forgets every address which was not seen within the lifetime. Addresses whose bucket has not refilled yet are
+     * kept so a client can not reset its limit by waiting out the lifetime.
+     */
+    public void expire() {
+        final long oldestSeen = System.currentTimeMillis() - lifetime;
+        records.values().removeIf(record->record.getLastSeen() < oldestSeen && record.getMessageBucket().isFull());
+    }
+
+    /**
+     * @return the number of addresses in the history.
+     */
+    public int size() {
+        return records.size();
+    }
+}
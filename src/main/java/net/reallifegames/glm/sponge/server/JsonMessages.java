@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import org.java_websocket.WebSocket;
+import org.java_websocket.framing.TextFrame;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Shared json serialization for messages sent to clients. Messages are generated straight to utf-8 bytes with one
+ * shared {@link JsonFactory} and a reusable buffer per thread, and are sent as text frames without being turned into a
+ * {@link String} first.
+ *
+ * @author Tyler Bucher
+ */
+public final class JsonMessages {
+
+    /**
+     * The json factory used for every message. Factories are thread safe and expensive to create.
+     */
+    @Nonnull
+    public static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * A reusable output buffer for each thread which serializes messages.
+     */
+    @Nonnull
+    private static final ThreadLocal<ByteArrayBuilder> outputBuffer = ThreadLocal.withInitial(ByteArrayBuilder::new);
+
+    /**
+     * Writes the content of a json message.
+     *
+     * @author Tyler Bucher
+     */
+    @FunctionalInterface
+    public interface JsonWriter {
+
+        /**
+         * Writes a message to the given generator.
+         *
+         * @param jsonGenerator the generator to write to.
+         * @throws IOException if the message could not be written.
+         */
+        void write(@Nonnull final JsonGenerator jsonGenerator) throws IOException;
+    }
+
+    /**
+     * Serializes a message to utf-8 bytes.
+     *
+     * @param jsonWriter writes the content of the message.
+     * @return the utf-8 encoded message.
+     *
+     * @throws IOException if the message could not be written.
+     */
+    @Nonnull
+    public static byte[] toBytes(@Nonnull final JsonWriter jsonWriter) throws IOException {
+        final ByteArrayBuilder byteArrayBuilder = outputBuffer.get();
+        byteArrayBuilder.reset();
+        try (JsonGenerator jsonGenerator = JSON_FACTORY.createGenerator(byteArrayBuilder, JsonEncoding.UTF8)) {
+            jsonWriter.write(jsonGenerator);
+        }
+        final byte[] message = byteArrayBuilder.toByteArray();
+        byteArrayBuilder.reset();
+        return message;
+    }
+
+    /**
+     * Sends an already utf-8 encoded json message to a client as a text frame.
+     *
+     * @param connection the client connection.
+     * @param message    the utf-8 encoded message.
+     */
+    public static void sendText(@Nonnull final WebSocket connection, @Nonnull final byte[] message) {
+        if (connection.isOpen()) {
+            final TextFrame textFrame = new TextFrame();
+            textFrame.setFin(true);
+            textFrame.setPayload(ByteBuffer.wrap(message));
+            connection.sendFrame(textFrame);
+        }
+    }
+
+    /**
+     * Serializes a message and sends it to a client as a text frame.
+     *
+     * @param connection the client connection.
+     * @param jsonWriter writes the content of the message.
+     * @throws IOException if the message could not be written.
+     */
+    public static void send(@Nonnull final WebSocket connection, @Nonnull final JsonWriter jsonWriter) throws IOException {
+        sendText(connection, toBytes(jsonWriter));
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import net.reallifegames.glm.sponge.PlayerPosition;
+import net.reallifegames.glm.sponge.PlayerSnapshot;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds information about a player already sent to a client.
+ *
+ * @author Tyler Bucher
+ */
+class TrackedPlayer {
+
+    /**
+     * The index of the player for the client.
+     */
+    final int index;
+
+    /**
+     * The last quantized x position sent to the client.
+     */
+    int x;
+
+    /**
+     * The last quantized y position sent to the client.
+     */
+    int y;
+
+    /**
+     * The last quantized z position sent to the client.
+     */
+    int z;
+
+    /**
+     * Creates a new {@link TrackedPlayer} with the given information.
+     *
+     * @param index the index of the player for the client.
+     */
+    TrackedPlayer(final int index) {
+        this.index = index;
+    }
+}
+
+/**
+ * Turns the players visible to one client into a stream of {@code playerDelta} messages. The first message for a
+ * world is a keyframe which lists every player. Later messages only list the indices of players who left, players who
+ * joined and the players who moved further than the move threshold. Players are referred to by a small index which
+ * is only valid for this client. Indices of players who left are reused, but never in the message which lists the
+ * player leaving. Clients should apply the leaves first, then the joins, then the moves. Positions are sent as
+ * integers in units of 1/{@link #POSITION_SCALE} block.
+ * <pre>
+ * {"cmd": "playerDelta", "data": {"worldId": "...", "keyframe": false,
+ *   "leaves": [1],
+ *   "joins": [{"i": 0, "name": "...", "id": "...", "x": 0, "y": 0, "z": 0}],
+ *   "moves": [2, x, y, z, 3, x, y, z]}}
+ * </pre>
+ * An encoder is not thread safe and must only be used by one thread at a time.
+ *
+ * @author Tyler Bucher
+ */
+public final class PlayerDeltaEncoder {
+
+    /**
+     * The number of position units per block.
+     */
+    public static final int POSITION_SCALE = 8;
+
+    /**
+     * The players already sent to the client, keyed by player id.
+     */
+    @Nonnull
+    private final Map<String, TrackedPlayer> players = new HashMap<>();
+
+    /**
+     * Indices of players who left which can be given to new players.
+     */
+    @Nonnull
+    private final ArrayDeque<Integer> freeIndices = new ArrayDeque<>();
+
+    /**
+     * The next index which was never used.
+     */
+    private int nextIndex;
+
+    /**
+     * The world of the last message or null if nothing was sent yet.
+     */
+    @Nullable
+    private String worldId;
+
+    /**
+     * The number of messages sent since the last keyframe.
+     */
+    private int messagesSinceKeyframe;
+
+    /**
+     * Creates the next message for the client.
+     *
+     * @param playersWorldId   the {@link java.util.UUID} of the world the client is viewing in string form.
+     * @param visiblePlayers   the players the client should see, taken from the newest {@link PlayerSnapshot}.
+     * @param moveThreshold    the distance in position units a player has to move before the move is sent.
+     * @param keyframeInterval the number of messages between keyframes.
+     * @return the utf-8 encoded message or null if nothing changed.
+     *
+     * @throws IOException if the message could not be written.
+     */
+    @Nullable
+    public byte[] update(@Nonnull final String playersWorldId, @Nonnull final List<PlayerPosition> visiblePlayers,
+                         final int moveThreshold, final int keyframeInterval) throws IOException {
+        // Start over when the client changed worlds or a keyframe is due
+        final boolean keyframe = !playersWorldId.equals(worldId) || messagesSinceKeyframe >= keyframeInterval;
+        if (keyframe) {
+            players.clear();
+            freeIndices.clear();
+            nextIndex = 0;
+            worldId = playersWorldId;
+            messagesSinceKeyframe = 0;
+        }
+        final Map<String, PlayerPosition> current = new HashMap<>();
+        for (PlayerPosition player : visiblePlayers) {
+            current.put(player.getId(), player);
+        }
+        // Find players who left
+        final List<Integer> leaves = new ArrayList<>();
+        final Iterator<Map.Entry<String, TrackedPlayer>> iterator = players.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, TrackedPlayer> entry = iterator.next();
+            if (!current.containsKey(entry.getKey())) {
+                leaves.add(entry.getValue().index);
+                iterator.remove();
+            }
+        }
+        // Find players who joined or moved
+        final List<PlayerPosition> joins = new ArrayList<>();
+        final List<TrackedPlayer> moves = new ArrayList<>();
+        for (PlayerPosition player : visiblePlayers) {
+            final int x = quantize(player.getX());
+            final int y = quantize(player.getY());
+            final int z = quantize(player.getZ());
+            TrackedPlayer trackedPlayer = players.get(player.getId());
+            if (trackedPlayer == null) {
+                trackedPlayer = new TrackedPlayer(freeIndices.isEmpty() ? nextIndex++ : freeIndices.poll());
+                players.put(player.getId(), trackedPlayer);
+                joins.add(player);
+            } else if (Math.abs(x - trackedPlayer.x) >= moveThreshold || Math.abs(y - trackedPlayer.y) >= moveThreshold ||
+                    Math.abs(z - trackedPlayer.z) >= moveThreshold) {
+                moves.add(trackedPlayer);
+            } else {
+                continue;
+            }
+            trackedPlayer.x = x;
+            trackedPlayer.y = y;
+            trackedPlayer.z = z;
+        }
+        // Free the indices of players who left only now so no player who joined in this message reuses one
+        freeIndices.addAll(leaves);
+        if (!keyframe && joins.isEmpty() && leaves.isEmpty() && moves.isEmpty()) {
+            return null;
+        }
+        messagesSinceKeyframe++;
+        return JsonMessages.toBytes(jsonGenerator->{
+            // Start json object
+            jsonGenerator.writeStartObject();
+            jsonGenerator.writeStringField("cmd", "playerDelta");
+            // Start data block
+            jsonGenerator.writeObjectFieldStart("data");
+            // echo world id
+            jsonGenerator.writeStringField("worldId", playersWorldId);
+            jsonGenerator.writeBooleanField("keyframe", keyframe);
+            // start leave array
+            jsonGenerator.writeArrayFieldStart("leaves");
+            for (int index : leaves) {
+                jsonGenerator.writeNumber(index);
+            }
+            // close leave array
+            jsonGenerator.writeEndArray();
+            // start join array
+            jsonGenerator.writeArrayFieldStart("joins");
+            for (PlayerPosition player : joins) {
+                final TrackedPlayer trackedPlayer = players.get(player.getId());
+                // start general player object
+                jsonGenerator.writeStartObject();
+                jsonGenerator.writeNumberField("i", trackedPlayer.index);
+                jsonGenerator.writeStringField("name", player.getName());
+                jsonGenerator.writeStringField("id", player.getId());
+                jsonGenerator.writeNumberField("x", trackedPlayer.x);
+                jsonGenerator.writeNumberField("y", trackedPlayer.y);
+                jsonGenerator.writeNumberField("z", trackedPlayer.z);
+                // close general object
+                jsonGenerator.writeEndObject();
+            }
+            // close join array
+            jsonGenerator.writeEndArray();
+            // start move array
+            jsonGenerator.writeArrayFieldStart("moves");
+            for (TrackedPlayer trackedPlayer : moves) {
+                jsonGenerator.writeNumber(trackedPlayer.index);
+                jsonGenerator.writeNumber(trackedPlayer.x);
+                jsonGenerator.writeNumber(trackedPlayer.y);
+                jsonGenerator.writeNumber(trackedPlayer.z);
+            }
+            // close move array
+            jsonGenerator.writeEndArray();
+            // close data object
+            jsonGenerator.writeEndObject();
+            // Close json object
+            jsonGenerator.writeEndObject();
+        });
+    }
+
+    /**
+     * Converts a block position to position units.
+     *
+     * @param position the block position.
+     * @return the position in units of 1/{@link #POSITION_SCALE} block.
+     */
+    private static int quantize(final double position) {
+        return (int) Math.round(position * POSITION_SCALE);
+    }
+}
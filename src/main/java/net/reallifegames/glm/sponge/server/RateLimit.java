@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The rate and burst of a {@link TokenBucket} as read from the config.
+ *
+ * @author Tyler Bucher
+ */
+public final class RateLimit {
+
+    /**
+     * The number of tokens earned per second.
+     */
+    private final double rate;
+
+    /**
+     * The maximum number of tokens which can be saved up.
+     */
+    private final double burst;
+
+    /**
+     * Creates a new {@link RateLimit} with the given information.
+     *
+     * @param rate  the number of tokens earned per second, 0 or less disables the limit.
+     * @param burst the maximum number of tokens which can be saved up.
+     */
+    public RateLimit(final double rate, final double burst) {
+        this.rate = rate;
+        this.burst = burst;
+    }
+
+    /**
+     * @return true if this limit is enabled.
+     */
+    public boolean isEnabled() {
+        return rate > 0;
+    }
+
+    /**
+     * @return a new full bucket for this limit.
+     */
+    @Nonnull
+    public TokenBucket createBucket() {
+        return new TokenBucket(rate, burst);
+    }
+
+    /**
+     * @return the number of tokens earned per second.
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * @return the maximum number of tokens which can be saved up.
+     */
+    public double getBurst() {
+        return burst;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.TextFrame;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * A view of a client connection for one request which carries a request id. Every json message sent through this
+ * connection gets the request id added as its first field, so handlers do not need to know about request ids. Binary
+ * messages are sent unchanged, writers of binary messages add the id to the message header themselves with
+ * {@link #getRequestId(WebSocket)}.
+ *
+ * @author Tyler Bucher
+ */
+public final class RequestConnection implements WebSocket {
+
+    /**
+     * The client connection.
+     */
+    @Nonnull
+    private final WebSocket connection;
+
+    /**
+     * The utf-8 encoded {@code "requestId":<id>,} prefix added to every json message.
+     */
+    @Nonnull
+    private final byte[] requestIdField;
+
+    /**
+     * The request id as a json value.
+     */
+    @Nonnull
+    private final String requestIdJson;
+
+    /**
+     * Creates a new request connection.
+     *
+     * @param connection    the client connection.
+     * @param requestIdJson the request id as a json value.
+     */
+    public RequestConnection(@Nonnull final WebSocket connection, @Nonnull final String requestIdJson) {
+        this.connection = connection;
+        this.requestIdJson = requestIdJson;
+        this.requestIdField = ("\"requestId\":" + requestIdJson + ",").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the client connection.
+     */
+    @Nonnull
+    public WebSocket getConnection() {
+        return connection;
+    }
+
+    /**
+     * @return the request id as a json value.
+     */
+    @Nonnull
+    public String getRequestIdJson() {
+        return requestIdJson;
+    }
+
+    /**
+     * Gets the request id a message sent through a connection answers.
+     *
+     * @param connection the connection the message is sent through.
+     * @return the request id as a json value or null if the connection does not carry a request id.
+     */
+    @Nullable
+    public static String getRequestId(@Nonnull final WebSocket connection) {
+        return connection instanceof RequestConnection ? ((RequestConnection) connection).getRequestIdJson() : null;
+    }
+
+    /**
+     * Adds the request id to a json object message.
+     *
+     * @param message the utf-8 encoded message.
+     * @param offset  the offset of the message in the array.
+     * @param length  the length of the message.
+     * @return the message with the request id or a copy of the message if it is not a json object.
+     */
+    @Nonnull
+    private byte[] addRequestId(@Nonnull final byte[] message, final int offset, final int length) {
+        if (length < 2 || message[offset] != '{') {
+            final byte[] copy = new byte[length];
+            System.arraycopy(message, offset, copy, 0, length);
+            return copy;
+        }
+        // An empty object does not need the trailing comma
+        final boolean empty = message[offset + 1] == '}';
+        final int fieldLength = empty ? requestIdField.length - 1 : requestIdField.length;
+        final byte[] result = new byte[length + fieldLength];
+        result[0] = '{';
+        System.arraycopy(requestIdField, 0, result, 1, fieldLength);
+        System.arraycopy(message, offset + 1, result, 1 + fieldLength, length - 1);
+        return result;
+    }
+
+    @Override
+    public void send(final String text) {
+        final byte[] message = text.getBytes(StandardCharsets.UTF_8);
+        JsonMessages.sendText(connection, addRequestId(message, 0, message.length));
+    }
+
+    @Override
+    public void sendFrame(final Framedata framedata) {
+        if (framedata.getOpcode() == Framedata.Opcode.TEXT && framedata.isFin()) {
+            final ByteBuffer payload = framedata.getPayloadData();
+            final byte[] message = new byte[payload.remaining()];
+            payload.duplicate().get(message);
+            final TextFrame textFrame = new TextFrame();
+            textFrame.setFin(true);
+            textFrame.setPayload(ByteBuffer.wrap(addRequestId(message, 0, message.length)));
+            connection.sendFrame(textFrame);
+        } else {
+            connection.sendFrame(framedata);
+        }
+    }
+
+    @Override
+    public void sendFrame(final Collection<Framedata> frames) {
+        connection.sendFrame(frames);
+    }
+
+    @Override
+    public void send(final ByteBuffer bytes) {
+        connection.send(bytes);
+    }
+
+    @Override
+    public void send(final byte[] bytes) {
+        connection.send(bytes);
+    }
+
+    @Override
+    public void close(final int code, final String message) {
+        connection.close(code, message);
+    }
+
+    @Override
+    public void close(final int code) {
+        connection.close(code);
+    }
+
+    @Override
+    public void close() {
+        connection.close();
+    }
+
+    @Override
+    public void closeConnection(final int code, final String message) {
+        connection.closeConnection(code, message);
+    }
+
+    @Override
+    public void sendPing() {
+        connection.sendPing();
+    }
+
+    @Override
+    public void sendFragmentedFrame(final Framedata.Opcode op, final ByteBuffer buffer, final boolean fin) {
+        connection.sendFragmentedFrame(op, buffer, fin);
+    }
+
+    @Override
+    public boolean hasBufferedData() {
+        return connection.hasBufferedData();
+    }
+
+    @Override
+    public InetSocketAddress getRemoteSocketAddress() {
+        return connection.getRemoteSocketAddress();
+    }
+
+    @Override
+    public InetSocketAddress getLocalSocketAddress() {
+        return connection.getLocalSocketAddress();
+    }
+
+    @Override
+    public boolean isConnecting() {
+        return connection.isConnecting();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return connection.isOpen();
+    }
+
+    @Override
+    public boolean isClosing() {
+        return connection.isClosing();
+    }
+
+    @Override
+    public boolean isFlushAndClose() {
+        return connection.isFlushAndClose();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return connection.isClosed();
+    }
+
+    @Override
+    public Draft getDraft() {
+        return connection.getDraft();
+    }
+
+    @Override
+    public READYSTATE getReadyState() {
+        return connection.getReadyState();
+    }
+
+    @Override
+    public String getResourceDescriptor() {
+        return connection.getResourceDescriptor();
+    }
+
+    @Override
+    public <T> void setAttachment(final T attachment) {
+        connection.setAttachment(attachment);
+    }
+
+    @Override
+    public <T> T getAttachment() {
+        return connection.getAttachment();
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock free token bucket implemented as a generic cell rate algorithm. Instead of a token count the bucket keeps the
+ * theoretical arrival time of the next token in a single {@link AtomicLong}, so acquiring tokens is one compare and
+ * set and an idle bucket needs no refill task.
+ *
+ * @author Tyler Bucher
+ */
+public final class TokenBucket {
+
+    /**
+     * The time in nanoseconds it takes to earn one token.
+     */
+    private final long emissionInterval;
+
+    /**
+     * How far in nanoseconds the theoretical arrival time may run ahead of now, which is the burst size in time.
+     */
+    private final long tolerance;
+
+    /**
+     * The theoretical arrival time in nanoseconds.
+     */
+    private final AtomicLong arrivalTime;
+
+    /**
+     * Creates a new full token bucket.
+     *
+     * @param rate  the number of tokens earned per second.
+     * @param burst the maximum number of tokens which can be saved up.
+     */
+    public TokenBucket(final double rate, final double burst) {
+        this.emissionInterval = Math.max(1L, (long) (1_000_000_000D / rate));
+        this.tolerance = (long) (emissionInterval * Math.max(1D, burst));
+        this.arrivalTime = new AtomicLong(System.nanoTime() - tolerance);
+    }
+
+    /**
+     * Takes one token from the bucket.
+     *
+     * @return true if a token was taken false if the bucket is empty.
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(1) == 0;
+    }
+
+    /**
+     * Takes tokens from the bucket. Nothing is taken if the bucket does not hold enough tokens.
+     *
+     * @param tokens the number of tokens to take.
+     * @return 0 if the tokens were taken, otherwise the time in nanoseconds until the bucket holds enough tokens or
+     * {@link Long#MAX_VALUE} if the bucket can never hold that many tokens.
+     */
+    public long tryAcquire(final long tokens) {
+        final long cost = tokens * emissionInterval;
+        if (cost > tolerance) {
+            return Long.MAX_VALUE;
+        }
+        while (true) {
+            final long now = System.nanoTime();
+            final long current = arrivalTime.get();
+            final long next = Math.max(current, now - tolerance) + cost;
+            if (next > now) {
+                return next - now;
+            }
+            if (arrivalTime.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Takes as many tokens as the bucket holds, up to a maximum.
+     *
+     * @param maxTokens the maximum number of tokens to take.
+     * @return the number of tokens taken.
+     */
+    public long tryAcquireUpTo(final long maxTokens) {
+        return tryAcquireUpTo(maxTokens, 1);
+    }
+
+    /**
+     * Takes as many whole units of tokens as the bucket holds, up to a maximum. Tokens left over which do not make up
+     * a whole unit stay in the bucket.
+     *
+     * @param maxUnits   the maximum number of units to take.
+     * @param unitTokens the number of tokens in one unit.
+     * @return the number of units taken.
+     */
+    public long tryAcquireUpTo(final long maxUnits, final long unitTokens) {
+        final long unitCost = unitTokens * emissionInterval;
+        while (true) {
+            final long now = System.nanoTime();
+            final long current = arrivalTime.get();
+            final long start = Math.max(current, now - tolerance);
+            final long units = Math.min(maxUnits, Math.max(0L, now - start) / unitCost);
+            if (units <= 0) {
+                return 0;
+            }
+            if (arrivalTime.compareAndSet(current, start + units * unitCost)) {
+                return units;
+            }
+        }
+    }
+
+    /**
+     * Gets the time until the bucket holds a number of tokens. Requests for more tokens than the bucket can hold are
+     * treated as a request for a full bucket.
+     *
+     * @param tokens the number of tokens.
+     * @return the time in nanoseconds until the bucket holds the tokens, 0 if it already does.
+     */
+    public long getWaitTime(final long tokens) {
+        final long now = System.nanoTime();
+        final long cost = Math.min(tolerance, tokens * emissionInterval);
+        return Math.max(0L, Math.max(arrivalTime.get(), now - tolerance) + cost - now);
+    }
+
+    /**
+     * @return the number of whole tokens currently in the bucket.
+     */
+    public long getAvailableTokens() {
+        final long now = System.nanoTime();
+        return Math.max(0L, now - Math.max(arrivalTime.get(), now - tolerance)) / emissionInterval;
+    }
+
+    /**
+     * @return true if the bucket has refilled completely, in which case it can be dropped and recreated later.
+     */
+    public boolean isFull() {
+        return System.nanoTime() - arrivalTime.get() >= tolerance;
+    }
+}
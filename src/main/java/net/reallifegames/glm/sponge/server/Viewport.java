@@ -0,0 +1,185 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The area of a world which a client is currently looking at, in chunk coordinates.
+ *
+ * @author Tyler Bucher
+ */
+public final class Viewport {
+
+    /**
+     * The largest chunk position on either axis a viewport may reach, the edge of a minecraft world.
+     */
+    public static final int MAX_CHUNK_POSITION = 1875000;
+
+    /**
+     * The {@link java.util.UUID} of the world in string form.
+     */
+    @Nonnull
+    private final String worldId;
+
+    /**
+     * The minimum chunk x position.
+     */
+    private final int minX;
+
+    /**
+     * The minimum chunk z position.
+     */
+    private final int minZ;
+
+    /**
+     * The maximum chunk x position.
+     */
+    private final int maxX;
+
+    /**
+     * The maximum chunk z position.
+     */
+    private final int maxZ;
+
+    /**
+     * The zoom level of the client map.
+     */
+    private final double zoom;
+
+    /**
+     * Creates a new viewport. The minimum and maximum positions are swapped if needed.
+     *
+     * @param worldId the {@link java.util.UUID} of the world in string form.
+     * @param x1      the first chunk x position.
+     * @param z1      the first chunk z position.
+     * @param x2      the second chunk x position.
+     * @param z2      the second chunk z position.
+     * @param zoom    the zoom level of the client map.
+     */
+    public Viewport(@Nonnull final String worldId, final int x1, final int z1, final int x2, final int z2, final double zoom) {
+        this.worldId = worldId;
+        this.minX = Math.min(x1, x2);
+        this.minZ = Math.min(z1, z2);
+        this.maxX = Math.max(x1, x2);
+        this.maxZ = Math.max(z1, z2);
+        this.zoom = zoom;
+    }
+
+    /**
+     * Checks if a chunk position sent by a client is inside of the area a viewport may cover.
+     *
+     * @param position the chunk x or z position.
+     * @return true if the position is valid false otherwise.
+     */
+    public static boolean isValidPosition(final long position) {
+        return position >= -MAX_CHUNK_POSITION && position <= MAX_CHUNK_POSITION;
+    }
+
+    /**
+     * Shrinks this viewport around its center if it covers more chunks than allowed. The result never reaches outside
+     * of this viewport.
+     *
+     * @param maxChunks the maximum number of chunks the viewport may cover.
+     * @return this viewport if it is small enough or a smaller viewport with the same center.
+     */
+    @Nonnull
+    public Viewport clamp(final int maxChunks) {
+        if (getArea() <= Math.max(1, maxChunks)) {
+            return this;
+        }
+        final long halfSize = Math.max(0, ((long) Math.sqrt(Math.max(1, maxChunks)) - 1) / 2);
+        final long centerX = ((long) minX + maxX) / 2;
+        final long centerZ = ((long) minZ + maxZ) / 2;
+        return new Viewport(worldId,
+                (int) Math.max(minX, centerX - halfSize),
+                (int) Math.max(minZ, centerZ - halfSize),
+                (int) Math.min(maxX, centerX + halfSize),
+                (int) Math.min(maxZ, centerZ + halfSize),
+                zoom
+        );
+    }
+
+    /**
+     * Checks if a chunk is inside of this viewport.
+     *
+     * @param worldId the {@link java.util.UUID} of the world in string form.
+     * @param x       the chunk x position.
+     * @param z       the chunk z position.
+     * @return true if the chunk is inside of this viewport false otherwise.
+     */
+    public boolean contains(@Nonnull final String worldId, final int x, final int z) {
+        return x >= minX && x <= maxX && z >= minZ && z <= maxZ && this.worldId.equals(worldId);
+    }
+
+    /**
+     * @return the number of chunks inside of this viewport.
+     */
+    public long getArea() {
+        return ((long) maxX - minX + 1) * ((long) maxZ - minZ + 1);
+    }
+
+    /**
+     * @return the {@link java.util.UUID} of the world in string form.
+     */
+    @Nonnull
+    public String getWorldId() {
+        return worldId;
+    }
+
+    /**
+     * @return the minimum chunk x position.
+     */
+    public int getMinX() {
+        return minX;
+    }
+
+    /**
+     * @return the minimum chunk z position.
+     */
+    public int getMinZ() {
+        return minZ;
+    }
+
+    /**
+     * @return the maximum chunk x position.
+     */
+    public int getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * @return the maximum chunk z position.
+     */
+    public int getMaxZ() {
+        return maxZ;
+    }
+
+    /**
+     * @return the zoom level of the client map.
+     */
+    public double getZoom() {
+        return zoom;
+    }
+}
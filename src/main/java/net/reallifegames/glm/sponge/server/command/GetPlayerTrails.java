@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server.command;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import net.reallifegames.glm.sponge.GlMap;
+import net.reallifegames.glm.sponge.PlayerTracker;
+import net.reallifegames.glm.sponge.PlayerTrail;
+import net.reallifegames.glm.sponge.server.GlmServerCommand;
+import org.java_websocket.WebSocket;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Gets the recent positions of the players in a world. Clients can use the trails to animate players between updates
+ * or to show where a player was last seen. The optional {@code since} value in the data block limits the trails to
+ * samples taken after that time and {@code limit} limits the number of samples per player. Each trail is sent as a
+ * flat array of time, x, y and z values, oldest first.
+ *
+ * @author Tyler Bucher
+ */
+public final class GetPlayerTrails extends GlmServerCommand {
+
+    /**
+     * Creates a new Glm server command.
+     *
+     * @param pluginInstance the plugin instance to get data from.
+     */
+    public GetPlayerTrails(@Nonnull final GlMap pluginInstance) {
+        super(pluginInstance);
+    }
+
+    @Override
+    public void handle(@Nonnull final WebSocket connection, @Nonnull final JsonNode commandNode) {
+        // Make sure world is is present
+        if (commandNode.get("worldId") == null) {
+            connection.send("{\"error\": \"Incomplete request\"}");
+            return;
+        }
+        final String worldId = commandNode.get("worldId").asText();
+        final JsonNode dataNode = commandNode.path("data");
+        final long since = dataNode.path("since").asLong(0);
+        final int capacity = Math.max(0, pluginInstance.getConfig().getPlayerTrailLength());
+        final int limit = Math.min(capacity, dataNode.path("limit").asInt(capacity));
+        final long[] times = new long[capacity];
+        final double[] positions = new double[capacity * 3];
+        sendJson(connection, jsonGenerator->{
+            // Start json object
+            jsonGenerator.writeStartObject();
+            // echo command back
+            jsonGenerator.writeStringField("cmd", "getPlayerTrails");
+            // Start data block
+            jsonGenerator.writeObjectFieldStart("data");
+            // echo world id
+            jsonGenerator.writeStringField("worldId", worldId);
+            // start player array
+            jsonGenerator.writeArrayFieldStart("players");
+            for (PlayerTrail trail : PlayerTracker.getTrails()) {
+                if (!trail.getWorldId().equals(worldId)) {
+                    continue;
+                }
+                final int count = trail.read(since, limit, times, positions);
+                // start general player object
+                jsonGenerator.writeStartObject();
+                jsonGenerator.writeStringField("name", trail.getName());
+                jsonGenerator.writeStringField("id", trail.getPlayerId());
+                jsonGenerator.writeNumberField("lastSeen", trail.getLastSeen());
+                // start trail array
+                jsonGenerator.writeArrayFieldStart("trail");
+                for (int i = 0; i < count; i++) {
+                    jsonGenerator.writeNumber(times[i]);
+                    jsonGenerator.writeNumber(positions[i * 3]);
+                    jsonGenerator.writeNumber(positions[i * 3 + 1]);
+                    jsonGenerator.writeNumber(positions[i * 3 + 2]);
+                }
+                // close trail array
+                jsonGenerator.writeEndArray();
+                // close general object
+                jsonGenerator.writeEndObject();
+            }
+            // close player array
+            jsonGenerator.writeEndArray();
+            // close data object
+            jsonGenerator.writeEndObject();
+            // Close json object
+            jsonGenerator.writeEndObject();
+        });
+    }
+
+    @Override
+    public long getInterval() {
+        return pluginInstance.getConfig().getPlayerRequestTime();
+    }
+}
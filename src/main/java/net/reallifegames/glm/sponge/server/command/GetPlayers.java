@@ -23,25 +23,20 @@
  */
 package net.reallifegames.glm.sponge.server.command;
 
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import net.reallifegames.glm.sponge.GlMap;
+import net.reallifegames.glm.sponge.PlayerSnapshot;
+import net.reallifegames.glm.sponge.PlayerTracker;
 import net.reallifegames.glm.sponge.server.GlmServerCommand;
+import net.reallifegames.glm.sponge.server.JsonMessages;
 import org.java_websocket.WebSocket;
-import org.spongepowered.api.Sponge;
-import org.spongepowered.api.entity.living.player.Player;
-import org.spongepowered.api.world.World;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
-import java.io.StringWriter;
-import java.util.Collection;
-import java.util.Optional;
-import java.util.UUID;
 
 /**
- * Gets a list of players for a world.
+ * Gets a list of players for a world. The list is taken from the newest {@link PlayerSnapshot} of the world, and is
+ * empty until the first sample is published.
  *
  * @author Tyler Bucher
  */
@@ -63,60 +58,22 @@ public final class GetPlayers extends GlmServerCommand {
             connection.send("{\"error\": \"Incomplete request\"}");
             return;
         }
-        // Get world if present
-        final Optional<World> optionalWorld = Sponge.getGame().getServer().getWorld(UUID.fromString(commandNode.get("worldId").asText()));
-        if (optionalWorld.isPresent()) {
-            // Get world
-            final World world = optionalWorld.get();
-            // Get players in world
-            final Collection<Player> players = world.getPlayers();
-            try {
-                StringWriter stringWriter = new StringWriter();
-                JsonGenerator jsonGenerator = new JsonFactory().createGenerator(stringWriter);
-                // Start json object
-                jsonGenerator.writeStartObject();
-                // echo command back
-                jsonGenerator.writeStringField("cmd", "getPlayers");
-                // Start data block
-                jsonGenerator.writeObjectFieldStart("data");
-                // echo command interval
-                jsonGenerator.writeNumberField("commandInterval", getInterval());
-                // echo world id
-                jsonGenerator.writeStringField("worldId", world.getUniqueId().toString());
-                // start player array
-                jsonGenerator.writeArrayFieldStart("players");
-                // echo players
-                for (Player player : players) {
-                    if (!player.hasPermission("glm.map.hide")) {
-                        // start general player object
-                        jsonGenerator.writeStartObject();
-                        jsonGenerator.writeStringField("name", player.getName());
-                        jsonGenerator.writeStringField("id", player.getUniqueId().toString());
-                        jsonGenerator.writeObjectFieldStart("position");
-                        jsonGenerator.writeNumberField("x", player.getLocation().getX());
-                        jsonGenerator.writeNumberField("y", player.getLocation().getY());
-                        jsonGenerator.writeNumberField("z", player.getLocation().getZ());
-                        // close position object
-                        jsonGenerator.writeEndObject();
-                        // close general object
-                        jsonGenerator.writeEndObject();
-                    }
-                }
-                // close player array
-                jsonGenerator.writeEndArray();
-                // close data object
-                jsonGenerator.writeEndObject();
-                // Close json object
-                jsonGenerator.writeEndObject();
-                // Flush data and send to client
-                jsonGenerator.flush();
-                connection.send(stringWriter.toString());
-            } catch (IOException e1) {
-                pluginInstance.getLogger().error("Json error", e1);
-                connection.send("{\"error\": \"Internal error\"}");
-            }
-        } else {
+        // Get the newest sample of the world, the world itself must not be touched off the main thread
+        final String worldId = commandNode.get("worldId").asText();
+        final PlayerSnapshot snapshot = PlayerTracker.getSnapshot(worldId);
+        // Every shown world has a snapshot once the first sample is published
+        if (snapshot == null && PlayerTracker.hasSampled()) {
             connection.send("{\"error\": \"Unknown world\"}");
+            return;
+        }
+        try {
+            JsonMessages.sendText(connection, PlayerTracker.getPlayersMessage(
+                    pluginInstance.getBaseGlmServer().getSession(connection).orElse(null),
+                    snapshot != null ? snapshot : PlayerTracker.getEmptySnapshot(worldId)
+            ));
+        } catch (IOException e) {
+            pluginInstance.getLogger().error("Json error", e);
+            connection.send("{\"error\": \"Internal error\"}");
         }
     }
 
@@ -23,10 +23,10 @@
  */
 package net.reallifegames.glm.sponge.server.command;
 
-import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import net.reallifegames.glm.sponge.GlMap;
+import net.reallifegames.glm.sponge.server.CachedResponse;
 import net.reallifegames.glm.sponge.server.GlmServerCommand;
 import org.java_websocket.WebSocket;
 import org.spongepowered.api.Sponge;
@@ -35,7 +35,6 @@ import org.spongepowered.api.world.World;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.Collection;
 import java.util.List;
 
@@ -46,6 +45,12 @@ import java.util.List;
  */
 public class GetServers extends GlmServerCommand {
 
+    /**
+     * The response sent to every client.
+     */
+    @Nonnull
+    private final CachedResponse cachedResponse;
+
     /**
      * Creates a new Glm server command.
      *
@@ -53,39 +58,40 @@ public class GetServers extends GlmServerCommand {
      */
     public GetServers(@Nonnull final GlMap pluginInstance) {
         super(pluginInstance);
+        this.cachedResponse = new CachedResponse(this::writeResponse);
     }
 
     @Override
     public void handle(@Nonnull final WebSocket connection, @Nonnull final JsonNode commandNode) {
-        try {
-            // Start json object
-            StringWriter stringWriter = new StringWriter();
-            JsonGenerator jsonGenerator = new JsonFactory().createGenerator(stringWriter);
-            jsonGenerator.writeStartObject();
-            // echo command back
-            jsonGenerator.writeStringField("cmd", "getServers");
-            // Start data block
-            jsonGenerator.writeObjectFieldStart("data");
-            // echo command interval
-            jsonGenerator.writeNumberField("commandInterval", getInterval());
-            // echo map ids
-            jsonGenerator.writeArrayFieldStart("servers");
-            for (String serverString : pluginInstance.getConfig().getServerList()) {
-                jsonGenerator.writeString(serverString);
-            }
-            // close id map object
-            jsonGenerator.writeEndArray();
-            // close data object
-            jsonGenerator.writeEndObject();
-            // Close json object
-            jsonGenerator.writeEndObject();
-            // Flush data and send to client
-            jsonGenerator.flush();
-            connection.send(stringWriter.toString());
-        } catch (IOException e1) {
-            pluginInstance.getLogger().error("Json error", e1);
-            connection.send("{\"error\": \"Internal error\"}");
+        sendCached(connection, cachedResponse);
+    }
+
+    /**
+     * Writes the response which is cached for every client.
+     *
+     * @param jsonGenerator the generator to write to.
+     * @throws IOException if the response could not be written.
+     */
+    private void writeResponse(@Nonnull final JsonGenerator jsonGenerator) throws IOException {
+        // Start json object
+        jsonGenerator.writeStartObject();
+        // echo command back
+        jsonGenerator.writeStringField("cmd", "getServers");
+        // Start data block
+        jsonGenerator.writeObjectFieldStart("data");
+        // echo command interval
+        jsonGenerator.writeNumberField("commandInterval", getInterval());
+        // echo map ids
+        jsonGenerator.writeArrayFieldStart("servers");
+        for (String serverString : pluginInstance.getConfig().getServerList()) {
+            jsonGenerator.writeString(serverString);
         }
+        // close id map object
+        jsonGenerator.writeEndArray();
+        // close data object
+        jsonGenerator.writeEndObject();
+        // Close json object
+        jsonGenerator.writeEndObject();
     }
 
     @Override
@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server.command;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import net.reallifegames.glm.sponge.GlMap;
+import net.reallifegames.glm.sponge.server.BinaryMessageWriter;
+import net.reallifegames.glm.sponge.server.BinaryProtocol;
+import net.reallifegames.glm.sponge.server.BlockStateTable;
+import net.reallifegames.glm.sponge.server.CachedResponse;
+import net.reallifegames.glm.sponge.server.GlmServerCommand;
+import net.reallifegames.glm.sponge.server.RequestConnection;
+import org.java_websocket.WebSocket;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Sends the block state table to a client. Clients which already have the table with the hash sent in {@code init}
+ * never need to call this. The table is sent as json, or as a gzip compressed binary message laid out as described in
+ * {@link BinaryProtocol} if the client asks for {@code compressed}.
+ *
+ * @author Tyler Bucher
+ */
+public final class GetStates extends GlmServerCommand {
+
+    /**
+     * The json response sent to every client.
+     */
+    @Nonnull
+    private final CachedResponse cachedResponse;
+
+    /**
+     * The body of the compressed binary response, everything after the header, or null if it was not built yet.
+     */
+    private volatile byte[] compressedBody;
+
+    /**
+     * Creates a new Glm server command.
+     *
+     * @param pluginInstance the plugin instance to get data from.
+     */
+    public GetStates(@Nonnull final GlMap pluginInstance) {
+        super(pluginInstance);
+        this.cachedResponse = new CachedResponse(this::writeResponse);
+    }
+
+    @Override
+    public void handle(@Nonnull final WebSocket connection, @Nonnull final JsonNode commandNode) {
+        final JsonNode dataNode = commandNode.get("data");
+        if (dataNode != null && dataNode.path("compressed").asBoolean(false)) {
+            connection.send(getCompressedResponse(connection));
+        } else {
+            sendCached(connection, cachedResponse);
+        }
+    }
+
+    /**
+     * Writes the json response.
+     *
+     * @param jsonGenerator the generator to write to.
+     * @throws IOException if the response could not be written.
+     */
+    private void writeResponse(@Nonnull final JsonGenerator jsonGenerator) throws IOException {
+        final BlockStateTable stateTable = pluginInstance.getStateTable();
+        // Start json object
+        jsonGenerator.writeStartObject();
+        // echo command back
+        jsonGenerator.writeStringField("cmd", "getStates");
+        // Start data block
+        jsonGenerator.writeObjectFieldStart("data");
+        // echo state table version
+        jsonGenerator.writeStringField("statesHash", stateTable.getHash());
+        // echo map ids
+        jsonGenerator.writeArrayFieldStart("states");
+        for (String stateName : stateTable.getStateNames()) {
+            jsonGenerator.writeString(stateName);
+        }
+        // close id map object
+        jsonGenerator.writeEndArray();
+        // close data object
+        jsonGenerator.writeEndObject();
+        // Close json object
+        jsonGenerator.writeEndObject();
+    }
+
+    /**
+     * Builds the compressed binary response for a client. The body is only built once, the header is written for every
+     * response since it carries the request id.
+     *
+     * @param connection the connection the response is sent through.
+     * @return the compressed binary response.
+     */
+    @Nonnull
+    private ByteBuffer getCompressedResponse(@Nonnull final WebSocket connection) {
+        final BlockStateTable stateTable = pluginInstance.getStateTable();
+        byte[] body = compressedBody;
+        if (body == null) {
+            final byte[] compressedTable = stateTable.getCompressedTable();
+            final BinaryMessageWriter bodyWriter = new BinaryMessageWriter(compressedTable.length + 80);
+            bodyWriter.writeByteArray(stateTable.getHash().getBytes(StandardCharsets.UTF_8));
+            bodyWriter.writeBytes(compressedTable);
+            final ByteBuffer buffer = bodyWriter.toByteBuffer();
+            body = new byte[buffer.remaining()];
+            buffer.get(body);
+            compressedBody = body;
+        }
+        final BinaryMessageWriter writer = new BinaryMessageWriter(BinaryProtocol.HEADER_SIZE + body.length + 80);
+        BinaryProtocol.writeHeader(writer, BinaryProtocol.TYPE_STATE_TABLE, new UUID(0, 0), 0,
+                RequestConnection.getRequestId(connection));
+        writer.setInt(BinaryProtocol.CHUNK_COUNT_OFFSET, stateTable.getStateNames().size());
+        writer.writeBytes(body);
+        return writer.toByteBuffer();
+    }
+
+    @Override
+    public long getInterval() {
+        return pluginInstance.getConfig().getGeneralCommandInterval();
+    }
+}
@@ -23,11 +23,11 @@
  */
 package net.reallifegames.glm.sponge.server.command;
 
-import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.flowpowered.math.vector.Vector3d;
 import net.reallifegames.glm.sponge.GlMap;
+import net.reallifegames.glm.sponge.server.CachedResponse;
 import net.reallifegames.glm.sponge.server.GlmServerCommand;
 import org.java_websocket.WebSocket;
 import org.spongepowered.api.Sponge;
@@ -36,7 +36,6 @@ import org.spongepowered.api.world.WorldBorder;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -48,6 +47,12 @@ import java.util.Optional;
  */
 public final class GetWorlds extends GlmServerCommand {
 
+    /**
+     * The response sent to every client.
+     */
+    @Nonnull
+    private final CachedResponse cachedResponse;
+
     /**
      * Creates a new Glm server command.
      *
@@ -55,75 +60,77 @@ public final class GetWorlds extends GlmServerCommand {
      */
     public GetWorlds(@Nonnull final GlMap pluginInstance) {
         super(pluginInstance);
+        // Worlds are read on the main thread, this command is created there
+        this.cachedResponse = CachedResponse.ofGameState(this::writeResponse);
     }
 
     @Override
-    @SuppressWarnings ("Duplicates")
     public void handle(@Nonnull final WebSocket connection, @Nonnull final JsonNode commandNode) {
-        try {
-            StringWriter stringWriter = new StringWriter();
-            JsonGenerator jsonGenerator = new JsonFactory().createGenerator(stringWriter);
-            // Start json object
-            jsonGenerator.writeStartObject();
-            // echo command back
-            jsonGenerator.writeStringField("cmd", "getWorlds");
-            // Start data block
-            jsonGenerator.writeObjectFieldStart("data");
-            // echo command interval
-            jsonGenerator.writeNumberField("commandInterval", getInterval());
-            // Start worlds block
-            jsonGenerator.writeArrayFieldStart("worlds");
-            // get list of worlds
-            final Collection<World> worlds = Sponge.getGame().getServer().getWorlds();
-            final List<String> availableWorlds = pluginInstance.getConfig().getWorldList();
-            for (World world : worlds) {
-                if (availableWorlds.contains(world.getName())) {
-                    final Optional<WorldBorder> optionalWorldBorder = pluginInstance.getWorldBorderMap().getOrDefault(world.getUniqueId(), Optional.empty());
-                    // start general world object
-                    jsonGenerator.writeStartObject();
-                    jsonGenerator.writeStringField("name", world.getName());
-                    if (pluginInstance.getConfig().getDefaultWorldName().equals(world.getName())) {
-                        jsonGenerator.writeBooleanField("default", true);
-                    }
-                    jsonGenerator.writeStringField("id", world.getUniqueId().toString());
-                    jsonGenerator.writeObjectFieldStart("spawnPoint");
-                    jsonGenerator.writeNumberField("x", world.getSpawnLocation().getX());
-                    jsonGenerator.writeNumberField("y", world.getSpawnLocation().getY());
-                    jsonGenerator.writeNumberField("z", world.getSpawnLocation().getZ());
-                    // close spawn point object
+        sendCached(connection, cachedResponse);
+    }
+
+    /**
+     * Writes the response which is cached for every client.
+     *
+     * @param jsonGenerator the generator to write to.
+     * @throws IOException if the response could not be written.
+     */
+    @SuppressWarnings ("Duplicates")
+    private void writeResponse(@Nonnull final JsonGenerator jsonGenerator) throws IOException {
+        // Start json object
+        jsonGenerator.writeStartObject();
+        // echo command back
+        jsonGenerator.writeStringField("cmd", "getWorlds");
+        // Start data block
+        jsonGenerator.writeObjectFieldStart("data");
+        // echo command interval
+        jsonGenerator.writeNumberField("commandInterval", getInterval());
+        // Start worlds block
+        jsonGenerator.writeArrayFieldStart("worlds");
+        // get list of worlds
+        final Collection<World> worlds = Sponge.getGame().getServer().getWorlds();
+        final List<String> availableWorlds = pluginInstance.getConfig().getWorldList();
+        for (World world : worlds) {
+            if (availableWorlds.contains(world.getName())) {
+                final Optional<WorldBorder> optionalWorldBorder = pluginInstance.getWorldBorderMap().getOrDefault(world.getUniqueId(), Optional.empty());
+                // start general world object
+                jsonGenerator.writeStartObject();
+                jsonGenerator.writeStringField("name", world.getName());
+                if (pluginInstance.getConfig().getDefaultWorldName().equals(world.getName())) {
+                    jsonGenerator.writeBooleanField("default", true);
+                }
+                jsonGenerator.writeStringField("id", world.getUniqueId().toString());
+                jsonGenerator.writeObjectFieldStart("spawnPoint");
+                jsonGenerator.writeNumberField("x", world.getSpawnLocation().getX());
+                jsonGenerator.writeNumberField("y", world.getSpawnLocation().getY());
+                jsonGenerator.writeNumberField("z", world.getSpawnLocation().getZ());
+                // close spawn point object
+                jsonGenerator.writeEndObject();
+                // Start world border if present
+                if (optionalWorldBorder.isPresent()) {
+                    final WorldBorder border = optionalWorldBorder.get();
+                    final Vector3d center = border.getCenter();
+                    jsonGenerator.writeObjectFieldStart("worldBorder");
+                    jsonGenerator.writeObjectFieldStart("center");
+                    jsonGenerator.writeNumberField("x", center.getX());
+                    jsonGenerator.writeNumberField("y", center.getY());
+                    jsonGenerator.writeNumberField("z", center.getZ());
+                    // close center object
                     jsonGenerator.writeEndObject();
-                    // Start world border if present
-                    if (optionalWorldBorder.isPresent()) {
-                        final WorldBorder border = optionalWorldBorder.get();
-                        final Vector3d center = border.getCenter();
-                        jsonGenerator.writeObjectFieldStart("worldBorder");
-                        jsonGenerator.writeObjectFieldStart("center");
-                        jsonGenerator.writeNumberField("x", center.getX());
-                        jsonGenerator.writeNumberField("y", center.getY());
-                        jsonGenerator.writeNumberField("z", center.getZ());
-                        // close center object
-                        jsonGenerator.writeEndObject();
-                        jsonGenerator.writeNumberField("diameter", border.getDiameter());
-                        // close world border object
-                        jsonGenerator.writeEndObject();
-                    }
-                    // close general object
+                    jsonGenerator.writeNumberField("diameter", border.getDiameter());
+                    // close world border object
                     jsonGenerator.writeEndObject();
                 }
+                // close general object
+                jsonGenerator.writeEndObject();
             }
-            // close world array
-            jsonGenerator.writeEndArray();
-            // close data object
-            jsonGenerator.writeEndObject();
-            // Close json object
-            jsonGenerator.writeEndObject();
-            // Flush data and send to client
-            jsonGenerator.flush();
-            connection.send(stringWriter.toString());
-        } catch (IOException e1) {
-            pluginInstance.getLogger().error("Json error", e1);
-            connection.send("{\"error\": \"Internal error\"}");
         }
+        // close world array
+        jsonGenerator.writeEndArray();
+        // close data object
+        jsonGenerator.writeEndObject();
+        // Close json object
+        jsonGenerator.writeEndObject();
     }
 
     @Override
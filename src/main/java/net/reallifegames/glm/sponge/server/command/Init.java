@@ -23,17 +23,19 @@
  */
 package net.reallifegames.glm.sponge.server.command;
 
-import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import net.reallifegames.glm.sponge.GlMap;
+import net.reallifegames.glm.sponge.server.BlockStateTable;
+import net.reallifegames.glm.sponge.server.CachedResponse;
+import net.reallifegames.glm.sponge.server.Capabilities;
 import net.reallifegames.glm.sponge.server.GlmServerCommand;
 import org.java_websocket.WebSocket;
-import org.spongepowered.api.block.BlockState;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles the initial data that a client needs to make future requests.
@@ -42,6 +44,13 @@ import java.io.StringWriter;
  */
 public final class Init extends GlmServerCommand {
 
+    /**
+     * The cached responses, keyed by {@link #getResponseKey(boolean, boolean, Set)}. Only the combinations clients
+     * negotiated are built.
+     */
+    @Nonnull
+    private final ConcurrentHashMap<Integer, CachedResponse> responses = new ConcurrentHashMap<>();
+
     /**
      * Creates a new Glm server command.
      *
@@ -53,39 +62,91 @@ public final class Init extends GlmServerCommand {
 
     @Override
     public void handle(@Nonnull final WebSocket connection, @Nonnull final JsonNode commandNode) {
-        try {
-            // Start json object
-            StringWriter stringWriter = new StringWriter();
-            JsonGenerator jsonGenerator = new JsonFactory().createGenerator(stringWriter);
-            jsonGenerator.writeStartObject();
-            // echo command back
-            jsonGenerator.writeStringField("cmd", "init");
-            // Start data block
-            jsonGenerator.writeObjectFieldStart("data");
-            // echo command interval
-            jsonGenerator.writeNumberField("commandInterval", getInterval());
-            // echo server name
-            jsonGenerator.writeStringField("serverName", pluginInstance.getConfig().getServerName());
-            // echo chunk lifetime
-            jsonGenerator.writeNumberField("cacheLifetime", pluginInstance.getConfig().getGlChunkCacheLifetime());
-            // echo map ids
+        // Agree on the wire format and features with the client
+        final JsonNode dataNode = commandNode.get("data");
+        final Capabilities capabilities = Capabilities.negotiate(dataNode);
+        pluginInstance.getBaseGlmServer().getSession(connection).ifPresent(session->session.setCapabilities(capabilities));
+        final boolean binaryChunks = capabilities.isBinary();
+        // Skip the state table if the client asked for it or already has the current one
+        final boolean includeStates = dataNode == null || !(dataNode.path("lite").asBoolean(false) ||
+                pluginInstance.getStateTable().getHash().equals(dataNode.path("statesHash").asText()));
+        final Set<String> features = capabilities.getFeatures();
+        sendCached(connection, responses.computeIfAbsent(getResponseKey(binaryChunks, includeStates, features),
+                key->new CachedResponse(jsonGenerator->writeResponse(jsonGenerator, binaryChunks, includeStates, features))
+        ));
+    }
+
+    /**
+     * Writes the init response.
+     *
+     * @param jsonGenerator the generator to write to.
+     * @param binaryChunks  true if the client negotiated binary chunk messages.
+     * @param includeStates true if the block state table should be included.
+     * @param features      the features both sides support.
+     * @throws IOException if the response could not be written.
+     */
+    private void writeResponse(@Nonnull final JsonGenerator jsonGenerator, final boolean binaryChunks,
+                               final boolean includeStates, @Nonnull final Set<String> features) throws IOException {
+        final BlockStateTable stateTable = pluginInstance.getStateTable();
+        // Start json object
+        jsonGenerator.writeStartObject();
+        // echo command back
+        jsonGenerator.writeStringField("cmd", "init");
+        // Start data block
+        jsonGenerator.writeObjectFieldStart("data");
+        // echo command interval
+        jsonGenerator.writeNumberField("commandInterval", getInterval());
+        // echo server name
+        jsonGenerator.writeStringField("serverName", pluginInstance.getConfig().getServerName());
+        // echo chunk lifetime
+        jsonGenerator.writeNumberField("cacheLifetime", pluginInstance.getConfig().getGlChunkCacheLifetime());
+        // echo negotiated chunk format
+        jsonGenerator.writeStringField("encoding", binaryChunks ? Capabilities.ENCODING_BINARY : Capabilities.ENCODING_JSON);
+        jsonGenerator.writeBooleanField("binary", binaryChunks);
+        // echo the negotiated features
+        jsonGenerator.writeArrayFieldStart("features");
+        for (String feature : Capabilities.FEATURES) {
+            if (features.contains(feature)) {
+                jsonGenerator.writeString(feature);
+            }
+        }
+        // close features array
+        jsonGenerator.writeEndArray();
+        // echo state table version
+        jsonGenerator.writeStringField("statesHash", stateTable.getHash());
+        // echo map ids
+        if (includeStates) {
             jsonGenerator.writeArrayFieldStart("states");
-            for (BlockState blockState : pluginInstance.getStateList()) {
-                jsonGenerator.writeString(blockState.toString());
+            for (String stateName : stateTable.getStateNames()) {
+                jsonGenerator.writeString(stateName);
             }
             // close id map object
             jsonGenerator.writeEndArray();
-            // close data object
-            jsonGenerator.writeEndObject();
-            // Close json object
-            jsonGenerator.writeEndObject();
-            // Flush data and send to client
-            jsonGenerator.flush();
-            connection.send(stringWriter.toString());
-        } catch (IOException e1) {
-            pluginInstance.getLogger().error("Json error", e1);
-            connection.send("{\"error\": \"Internal error\"}");
         }
+        // close data object
+        jsonGenerator.writeEndObject();
+        // Close json object
+        jsonGenerator.writeEndObject();
+    }
+
+    /**
+     * Gets the key of a cached response.
+     *
+     * @param binaryChunks  true if the client negotiated binary chunk messages.
+     * @param includeStates true if the block state table is included.
+     * @param features      the features both sides support.
+     * @return the key of the response in {@link #responses}.
+     */
+    private static int getResponseKey(final boolean binaryChunks, final boolean includeStates,
+                                      @Nonnull final Set<String> features) {
+        int key = (binaryChunks ? 1 : 0) | (includeStates ? 2 : 0);
+        // One bit for every known feature
+        for (int i = 0; i < Capabilities.FEATURES.size(); i++) {
+            if (features.contains(Capabilities.FEATURES.get(i))) {
+                key |= 4 << i;
+            }
+        }
+        return key;
     }
 
     @Override
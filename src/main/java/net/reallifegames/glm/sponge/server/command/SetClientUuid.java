@@ -76,7 +76,7 @@ public class SetClientUuid extends GlmServerCommand {
                 return;
             }
         }
-        pluginInstance.getClientMapIdMap().put(connection.getRemoteSocketAddress().getHostString(), uuidNode.asText());
+        pluginInstance.getBaseGlmServer().getSession(connection).ifPresent(session->session.setMapId(uuidNode.asText()));
     }
 
     @Override
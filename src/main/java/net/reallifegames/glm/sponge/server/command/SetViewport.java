@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server.command;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.flowpowered.math.vector.Vector3i;
+import net.reallifegames.glm.sponge.ChunkPipeline;
+import net.reallifegames.glm.sponge.GlMap;
+import net.reallifegames.glm.sponge.server.ChunkBudget;
+import net.reallifegames.glm.sponge.server.ClientSession;
+import net.reallifegames.glm.sponge.server.GlmServerCommand;
+import net.reallifegames.glm.sponge.server.Viewport;
+import org.java_websocket.WebSocket;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.world.World;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Sets the area of the map a client is looking at and sends every chunk in that area which the client has not
+ * received yet. Chunks closest to the center of the viewport are sent first.
+ *
+ * @author Tyler Bucher
+ */
+public class SetViewport extends GlmServerCommand {
+
+    /**
+     * Creates a new Glm server command.
+     *
+     * @param pluginInstance the plugin instance to get data from.
+     */
+    public SetViewport(@Nonnull final GlMap pluginInstance) {
+        super(pluginInstance);
+    }
+
+    @Override
+    public void handle(@Nonnull final WebSocket connection, @Nonnull final JsonNode commandNode) {
+        // Make sure world is is present
+        if (commandNode.get("worldId") == null) {
+            connection.send("{\"error\": \"Incomplete request\"}");
+            return;
+        }
+        // Make sure data is present
+        final JsonNode dataNode = commandNode.get("data");
+        if (dataNode == null || !dataNode.has("minX") || !dataNode.has("minZ") || !dataNode.has("maxX") || !dataNode.has("maxZ")) {
+            connection.send("{\"error\": \"Incomplete request\"}");
+            return;
+        }
+        final long minX = dataNode.get("minX").asLong();
+        final long minZ = dataNode.get("minZ").asLong();
+        final long maxX = dataNode.get("maxX").asLong();
+        final long maxZ = dataNode.get("maxZ").asLong();
+        // Make sure the viewport is inside of the world
+        if (!Viewport.isValidPosition(minX) || !Viewport.isValidPosition(minZ) || !Viewport.isValidPosition(maxX) ||
+                !Viewport.isValidPosition(maxZ)) {
+            connection.send("{\"error\": \"Invalid viewport\"}");
+            return;
+        }
+        final Optional<ClientSession> optionalSession = pluginInstance.getBaseGlmServer().getSession(connection);
+        if (!optionalSession.isPresent()) {
+            return;
+        }
+        // Only continue if world is present
+        final Optional<World> worldOptional = Sponge.getServer().getWorld(UUID.fromString(commandNode.get("worldId").asText()));
+        if (worldOptional.isPresent()) {
+            final World world = worldOptional.get();
+            final String worldId = world.getUniqueId().toString();
+            final ClientSession session = optionalSession.get();
+            final Viewport viewport = new Viewport(worldId, (int) minX, (int) minZ, (int) maxX, (int) maxZ,
+                    dataNode.path("zoom").asDouble(1.0d)
+            ).clamp(pluginInstance.getConfig().getMaxViewportChunks());
+            // Forget sent chunks if the client lost its own copy
+            if (dataNode.path("reset").asBoolean(false)) {
+                session.clearSentChunks(worldId);
+            }
+            session.setViewport(viewport);
+            session.trimSentChunks(pluginInstance.getConfig().getMaxTrackedChunks(), viewport);
+            // Collect the chunks the client does not have and is not already waiting for
+            final List<Vector3i> chunkLocations = new ArrayList<>();
+            for (long x = viewport.getMinX(); x <= viewport.getMaxX(); x++) {
+                for (long z = viewport.getMinZ(); z <= viewport.getMaxZ(); z++) {
+                    if (session.claimChunk(worldId, (int) x, (int) z)) {
+                        chunkLocations.add(new Vector3i((int) x, 0, (int) z));
+                    }
+                }
+            }
+            // Send the center of the viewport first
+            final double centerX = (viewport.getMinX() + viewport.getMaxX()) / 2.0d;
+            final double centerZ = (viewport.getMinZ() + viewport.getMaxZ()) / 2.0d;
+            chunkLocations.sort(Comparator.comparingDouble(position->
+                    (position.getX() - centerX) * (position.getX() - centerX) + (position.getZ() - centerZ) * (position.getZ() - centerZ)
+            ));
+            // Charge the request before any chunk is looked up, the chunks furthest from the center are deferred first
+            final List<Vector3i> admittedLocations = ChunkBudget.admitRequest(pluginInstance, connection, worldId, chunkLocations);
+            // Resolve the chunks on the worker pool
+            ChunkPipeline.execute(()->ChunkPipeline.requestChunks(connection, world, admittedLocations));
+        } else {
+            connection.send("{\"error\": \"Invalid World\"}");
+        }
+    }
+
+    @Override
+    public long getInterval() {
+        // Viewport updates arrive while the map is panned
+        return 0;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the ring buffer of recent positions in {@link PlayerTrail}.
+ *
+ * @author Tyler Bucher
+ */
+public class PlayerTrailTest {
+
+    @Test
+    public void readsSamplesOldestFirst() {
+        final PlayerTrail trail = new PlayerTrail("id", "world", "name", 4);
+        trail.record(10, 1, 2, 3);
+        trail.record(20, 4, 5, 6);
+        final long[] times = new long[4];
+        final double[] positions = new double[12];
+        assertEquals(2, trail.read(0, 4, times, positions));
+        assertEquals(10, times[0]);
+        assertEquals(20, times[1]);
+        assertEquals(1.0d, positions[0], 0.0d);
+        assertEquals(6.0d, positions[5], 0.0d);
+        assertEquals(20, trail.getLastSeen());
+    }
+
+    @Test
+    public void dropsTheOldestSamplesWhenFull() {
+        final PlayerTrail trail = new PlayerTrail("id", "world", "name", 3);
+        for (int i = 1; i <= 5; i++) {
+            trail.record(i * 10, i, 0, -i);
+        }
+        final long[] times = new long[3];
+        final double[] positions = new double[9];
+        assertEquals(3, trail.read(0, 10, times, positions));
+        assertEquals(30, times[0]);
+        assertEquals(40, times[1]);
+        assertEquals(50, times[2]);
+        assertEquals(3.0d, positions[0], 0.0d);
+        assertEquals(-5.0d, positions[8], 0.0d);
+        assertEquals(50, trail.getLastSeen());
+    }
+
+    @Test
+    public void readsOnlyNewerAndNewestSamples() {
+        final PlayerTrail trail = new PlayerTrail("id", "world", "name", 8);
+        for (int i = 1; i <= 6; i++) {
+            trail.record(i * 10, i, i, i);
+        }
+        final long[] times = new long[8];
+        final double[] positions = new double[24];
+        // Samples at or before the since time are skipped
+        assertEquals(2, trail.read(40, 8, times, positions));
+        assertEquals(50, times[0]);
+        assertEquals(60, times[1]);
+        // The newest samples are kept when the limit is reached
+        assertEquals(3, trail.read(0, 3, times, positions));
+        assertEquals(40, times[0]);
+        assertEquals(60, times[2]);
+        assertEquals(0, trail.read(60, 8, times, positions));
+    }
+
+    @Test
+    public void startsEmpty() {
+        final PlayerTrail trail = new PlayerTrail("id", "world", "name", 2);
+        assertEquals(0, trail.read(0, 2, new long[2], new double[6]));
+        assertEquals(0, trail.getLastSeen());
+        assertEquals(2, trail.getCapacity());
+    }
+}
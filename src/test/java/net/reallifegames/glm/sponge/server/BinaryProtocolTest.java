@@ -0,0 +1,113 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the binary message layout of {@link BinaryProtocol}.
+ *
+ * @author Tyler Bucher
+ */
+public class BinaryProtocolTest {
+
+    /**
+     * The world used in the tests.
+     */
+    private static final UUID WORLD_ID = UUID.fromString("01234567-89ab-cdef-0123-456789abcdef");
+
+    @Test
+    public void headerHasFixedLayout() {
+        final BinaryMessageWriter writer = new BinaryMessageWriter(64);
+        BinaryProtocol.writeHeader(writer, BinaryProtocol.TYPE_CHUNK_PAGE, WORLD_ID, 3, null);
+        final ByteBuffer buffer = writer.toByteBuffer();
+        assertEquals(BinaryProtocol.HEADER_SIZE + 1, buffer.remaining());
+        assertEquals(BinaryProtocol.MAGIC, buffer.get(0));
+        assertEquals(BinaryProtocol.VERSION, buffer.get(1));
+        assertEquals(BinaryProtocol.TYPE_CHUNK_PAGE, buffer.get(2));
+        assertEquals(0, buffer.get(BinaryProtocol.FLAGS_OFFSET));
+        assertEquals(WORLD_ID.getMostSignificantBits(), buffer.getLong(4));
+        assertEquals(WORLD_ID.getLeastSignificantBits(), buffer.getLong(12));
+        assertEquals(3, buffer.getInt(20));
+        assertEquals(0, buffer.getInt(BinaryProtocol.CHUNK_COUNT_OFFSET));
+        assertEquals(0, buffer.getInt(BinaryProtocol.TOTAL_CHUNKS_OFFSET));
+        assertEquals(0, buffer.getInt(BinaryProtocol.QUEUED_CHUNKS_OFFSET));
+        // No request id
+        assertEquals(0, buffer.get(BinaryProtocol.HEADER_SIZE));
+    }
+
+    @Test
+    public void headerCarriesRequestId() {
+        final BinaryMessageWriter writer = new BinaryMessageWriter(64);
+        BinaryProtocol.writeHeader(writer, BinaryProtocol.TYPE_CHUNK_PAGE, WORLD_ID, 0, "\"tile-7\"");
+        final ByteBuffer buffer = writer.toByteBuffer();
+        final byte[] expected = "\"tile-7\"".getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected.length, buffer.get(BinaryProtocol.HEADER_SIZE));
+        final byte[] requestId = new byte[expected.length];
+        buffer.position(BinaryProtocol.HEADER_SIZE + 1);
+        buffer.get(requestId);
+        assertArrayEquals(expected, requestId);
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void countsCanBeSetAfterTheHeader() {
+        final BinaryMessageWriter writer = new BinaryMessageWriter(16);
+        BinaryProtocol.writeHeader(writer, BinaryProtocol.TYPE_CHUNK_PAGE, WORLD_ID, 0, "12");
+        writer.writeSignedVarInt(-1);
+        writer.setByte(BinaryProtocol.FLAGS_OFFSET, BinaryProtocol.FLAG_MORE);
+        writer.setInt(BinaryProtocol.CHUNK_COUNT_OFFSET, 5);
+        writer.setInt(BinaryProtocol.TOTAL_CHUNKS_OFFSET, 70000);
+        final ByteBuffer buffer = writer.toByteBuffer();
+        assertEquals(BinaryProtocol.FLAG_MORE, buffer.get(BinaryProtocol.FLAGS_OFFSET));
+        assertEquals(5, buffer.getInt(BinaryProtocol.CHUNK_COUNT_OFFSET));
+        assertEquals(70000, buffer.getInt(BinaryProtocol.TOTAL_CHUNKS_OFFSET));
+        // Zig-zag encoded -1 follows the two byte request id
+        assertEquals(1, buffer.get(BinaryProtocol.HEADER_SIZE + 3));
+        assertEquals(BinaryProtocol.HEADER_SIZE + 4, buffer.remaining());
+    }
+
+    @Test
+    public void decodesMimeBase64Payloads() {
+        final byte[] payload = new byte[200];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        assertArrayEquals(payload, BinaryProtocol.decodePayload(Base64.getMimeEncoder().encodeToString(payload)));
+        assertArrayEquals(payload, BinaryProtocol.decodePayload(Base64.getEncoder().encodeToString(payload)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPayloadsWhichAreNotBase64() {
+        BinaryProtocol.decodePayload("not base64!");
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the chunk admission of {@link ChunkBudget}.
+ *
+ * @author Tyler Bucher
+ */
+public class ChunkBudgetTest {
+
+    @Test
+    public void admitsWhatFits() {
+        final ChunkBudget budget = new ChunkBudget(new RateLimit(0.001, 100));
+        assertEquals(10, budget.admit(10, ChunkBudget.COST_SQL));
+        assertEquals(15, budget.admit(20, ChunkBudget.COST_SQL));
+        assertEquals(0, budget.admit(1, ChunkBudget.COST_SQL));
+    }
+
+    @Test
+    public void keepsTheRemainderBelowOneChunk() {
+        // One token every 1000 seconds so the budget can not refill during the test
+        final ChunkBudget budget = new ChunkBudget(new RateLimit(0.001, 31));
+        assertEquals(0, budget.admit(1, ChunkBudget.COST_GENERATE));
+        // The tokens which did not cover a generated chunk are still there for cheaper chunks
+        assertEquals(7, budget.admit(10, ChunkBudget.COST_SQL));
+        assertEquals(3, budget.admit(10, ChunkBudget.COST_REQUEST));
+        assertEquals(0, budget.admit(1, ChunkBudget.COST_REQUEST));
+    }
+}
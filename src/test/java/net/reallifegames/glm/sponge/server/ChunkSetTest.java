@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the chunk position bitmaps of {@link ChunkSet}.
+ *
+ * @author Tyler Bucher
+ */
+public class ChunkSetTest {
+
+    @Test
+    public void addsEachChunkOnce() {
+        final ChunkSet chunkSet = new ChunkSet();
+        assertTrue(chunkSet.add(3, 4));
+        assertFalse(chunkSet.add(3, 4));
+        assertTrue(chunkSet.contains(3, 4));
+        assertFalse(chunkSet.contains(4, 3));
+        assertEquals(1, chunkSet.size());
+    }
+
+    @Test
+    public void keepsNegativeAndEdgePositionsApart() {
+        final ChunkSet chunkSet = new ChunkSet();
+        final int[][] positions = {{-1, -1}, {-1, 0}, {0, -1}, {0, 0}, {31, 31}, {32, 32}, {-32, -33},
+                {Integer.MAX_VALUE, Integer.MIN_VALUE}, {Integer.MIN_VALUE, Integer.MAX_VALUE}};
+        for (int[] position : positions) {
+            assertTrue(chunkSet.add(position[0], position[1]));
+        }
+        assertEquals(positions.length, chunkSet.size());
+        for (int[] position : positions) {
+            assertTrue(chunkSet.contains(position[0], position[1]));
+        }
+        assertFalse(chunkSet.contains(1, 1));
+        assertFalse(chunkSet.contains(-33, -32));
+    }
+
+    @Test
+    public void removesChunks() {
+        final ChunkSet chunkSet = new ChunkSet();
+        chunkSet.add(5, 5);
+        chunkSet.add(6, 5);
+        assertTrue(chunkSet.remove(5, 5));
+        assertFalse(chunkSet.remove(5, 5));
+        assertFalse(chunkSet.remove(100, 100));
+        assertFalse(chunkSet.contains(5, 5));
+        assertTrue(chunkSet.contains(6, 5));
+        assertEquals(1, chunkSet.size());
+        assertTrue(chunkSet.remove(6, 5));
+        assertEquals(0, chunkSet.size());
+        // The region can be used again after it was dropped
+        assertTrue(chunkSet.add(6, 5));
+    }
+
+    @Test
+    public void retainsOnlyRegionsNearTheArea() {
+        final ChunkSet chunkSet = new ChunkSet();
+        chunkSet.add(0, 0);
+        chunkSet.add(31, 31);
+        chunkSet.add(40, 0);
+        chunkSet.add(-1, 0);
+        chunkSet.add(200, 200);
+        chunkSet.retainRegions(10, 10, 20, 20);
+        assertTrue(chunkSet.contains(0, 0));
+        assertTrue(chunkSet.contains(31, 31));
+        assertFalse(chunkSet.contains(40, 0));
+        assertFalse(chunkSet.contains(-1, 0));
+        assertFalse(chunkSet.contains(200, 200));
+        assertEquals(2, chunkSet.size());
+    }
+
+    @Test
+    public void clearsAllChunks() {
+        final ChunkSet chunkSet = new ChunkSet();
+        chunkSet.add(1, 2);
+        chunkSet.add(-70, 90);
+        chunkSet.clear();
+        assertEquals(0, chunkSet.size());
+        assertFalse(chunkSet.contains(1, 2));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the top level fields read by {@link CommandRequest}.
+ *
+ * @author Tyler Bucher
+ */
+public class CommandRequestTest {
+
+    @Test
+    public void readsTheTopLevelFields() throws Exception {
+        final CommandRequest request = CommandRequest.parse("{\"cmd\":\"getChunksForPositions\",\"worldId\":\"w\"," +
+                "\"dataType\":\"gzip\",\"requestId\":7,\"data\":[{\"x\":1,\"z\":2}]}");
+        assertEquals("getChunksForPositions", request.getCommand());
+        assertEquals("w", request.getWorldId());
+        assertEquals("gzip", request.getDataType());
+        assertEquals("7", request.getRequestId());
+        assertArrayEquals(new double[]{1, 0, 2}, request.readPositions(), 0.0);
+    }
+
+    @Test
+    public void ignoresNestedCommandFields() throws Exception {
+        final CommandRequest request = CommandRequest.parse("{\"cmd\":{\"cmd\":\"init\"},\"worldId\":[\"w\"]," +
+                "\"dataType\":{},\"data\":[{\"x\":3}],\"requestId\":\"a\"}");
+        assertNull(request.getCommand());
+        assertNull(request.getWorldId());
+        assertNull(request.getDataType());
+        // The fields after the nested values are still read
+        assertTrue(request.hasData());
+        assertEquals("\"a\"", request.getRequestId());
+    }
+
+    @Test
+    public void ignoresStructuredRequestIds() throws Exception {
+        final CommandRequest request = CommandRequest.parse("{\"requestId\":{\"cmd\":\"init\"},\"cmd\":\"getWorlds\"}");
+        assertNull(request.getRequestId());
+        assertEquals("getWorlds", request.getCommand());
+        assertFalse(request.hasData());
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void rejectsMessagesWhichAreNotObjects() throws Exception {
+        CommandRequest.parse("[\"cmd\"]");
+    }
+}
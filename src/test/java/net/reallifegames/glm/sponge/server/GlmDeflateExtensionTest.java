@@ -0,0 +1,209 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.framing.ContinuousFrame;
+import org.java_websocket.framing.TextFrame;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the handshake, compression and decompression of {@link GlmDeflateExtension}.
+ *
+ * @author Tyler Bucher
+ */
+public class GlmDeflateExtensionTest {
+
+    @Test
+    public void acceptsOffersItCanHonor() {
+        final GlmDeflateExtension extension = new GlmDeflateExtension(6, 0, false);
+        assertFalse(extension.acceptProvidedExtensionAsServer(null));
+        assertFalse(extension.acceptProvidedExtensionAsServer("x-webkit-deflate-frame"));
+        assertFalse(extension.acceptProvidedExtensionAsServer("permessage-deflate; server_max_window_bits=10"));
+        assertFalse(extension.acceptProvidedExtensionAsServer("permessage-deflate; unknown_parameter"));
+        assertTrue(extension.acceptProvidedExtensionAsServer("permessage-deflate; client_max_window_bits"));
+        assertEquals("permessage-deflate; server_no_context_takeover", extension.getProvidedExtensionAsServer());
+        // The second offer is used when the first can not be honored
+        assertTrue(extension.acceptProvidedExtensionAsServer(
+                "permessage-deflate; server_max_window_bits=9, permessage-deflate; client_no_context_takeover"));
+        assertEquals("permessage-deflate; server_no_context_takeover; client_no_context_takeover",
+                extension.getProvidedExtensionAsServer());
+    }
+
+    @Test
+    public void compressesMessagesOverTheThreshold() throws Exception {
+        final GlmDeflateExtension extension = new GlmDeflateExtension(6, 64, false);
+        final String small = "{\"cmd\":\"init\"}";
+        final TextFrame smallFrame = textFrame(small.getBytes(StandardCharsets.UTF_8), true);
+        extension.encodeFrame(smallFrame);
+        assertFalse(smallFrame.isRSV1());
+        assertEquals(small, StandardCharsets.UTF_8.decode(smallFrame.getPayloadData()).toString());
+        final byte[] message = repeat("{\"x\":1,\"z\":2}", 200);
+        // Every message can be decompressed on its own
+        for (int i = 0; i < 2; i++) {
+            final TextFrame frame = textFrame(message, true);
+            extension.encodeFrame(frame);
+            assertTrue(frame.isRSV1());
+            assertTrue(frame.getPayloadData().remaining() < message.length);
+            final Inflater inflater = new Inflater(true);
+            assertTrue(Arrays.equals(message, inflate(inflater, frame.getPayloadData())));
+        }
+    }
+
+    @Test
+    public void leavesFragmentedMessagesUncompressed() {
+        final GlmDeflateExtension extension = new GlmDeflateExtension(6, 0, false);
+        final byte[] message = repeat("abc", 100);
+        final TextFrame frame = textFrame(message, false);
+        extension.encodeFrame(frame);
+        assertFalse(frame.isRSV1());
+        assertEquals(message.length, frame.getPayloadData().remaining());
+    }
+
+    @Test
+    public void decompressesMessagesWithContextTakeover() throws Exception {
+        final GlmDeflateExtension extension = new GlmDeflateExtension(6, 0, false);
+        assertTrue(extension.acceptProvidedExtensionAsServer("permessage-deflate"));
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        final byte[] first = repeat("{\"cmd\":\"getPlayers\"}", 20);
+        final byte[] second = repeat("{\"cmd\":\"getPlayers\"}", 21);
+        for (byte[] message : new byte[][]{first, second}) {
+            final TextFrame frame = textFrame(deflate(deflater, message), true);
+            frame.setRSV1(true);
+            extension.isFrameValid(frame);
+            extension.decodeFrame(frame);
+            assertFalse(frame.isRSV1());
+            assertTrue(Arrays.equals(message, toArray(frame.getPayloadData())));
+        }
+    }
+
+    @Test
+    public void decompressesFragmentedMessages() throws Exception {
+        final GlmDeflateExtension extension = new GlmDeflateExtension(6, 0, true);
+        assertTrue(extension.acceptProvidedExtensionAsServer("permessage-deflate"));
+        final byte[] message = repeat("{\"cmd\":\"setViewport\"}", 50);
+        final byte[] compressed = deflate(new Deflater(Deflater.DEFAULT_COMPRESSION, true), message);
+        final int split = compressed.length / 2;
+        final TextFrame first = textFrame(Arrays.copyOfRange(compressed, 0, split), false);
+        first.setRSV1(true);
+        final ContinuousFrame second = new ContinuousFrame();
+        second.setFin(true);
+        second.setPayload(ByteBuffer.wrap(Arrays.copyOfRange(compressed, split, compressed.length)));
+        extension.decodeFrame(first);
+        extension.decodeFrame(second);
+        final ByteBuffer result = ByteBuffer.allocate(message.length);
+        result.put(first.getPayloadData()).put(second.getPayloadData());
+        assertTrue(Arrays.equals(message, result.array()));
+    }
+
+    @Test(expected = InvalidDataException.class)
+    public void rejectsRsv1OnContinuationFrames() throws Exception {
+        final ContinuousFrame frame = new ContinuousFrame();
+        frame.setRSV1(true);
+        new GlmDeflateExtension(6, 0, false).isFrameValid(frame);
+    }
+
+    /**
+     * Creates a text frame.
+     *
+     * @param payload the payload of the frame.
+     * @param fin     true if this is the last frame of the message.
+     * @return the new frame.
+     */
+    private static TextFrame textFrame(final byte[] payload, final boolean fin) {
+        final TextFrame frame = new TextFrame();
+        frame.setFin(fin);
+        frame.setPayload(ByteBuffer.wrap(payload));
+        return frame;
+    }
+
+    /**
+     * Repeats a string and encodes it with utf-8.
+     *
+     * @param text  the text to repeat.
+     * @param count the number of times to repeat the text.
+     * @return the utf-8 encoded text.
+     */
+    private static byte[] repeat(final String text, final int count) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(text);
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compresses a message the way a client does, keeping the context of the deflater.
+     *
+     * @param deflater the deflater of the client.
+     * @param message  the message to compress.
+     * @return the compressed message without the trailing empty block.
+     */
+    private static byte[] deflate(final Deflater deflater, final byte[] message) {
+        deflater.setInput(message);
+        final byte[] buffer = new byte[message.length + 64];
+        final int length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+        return Arrays.copyOf(buffer, length - 4);
+    }
+
+    /**
+     * Decompresses a message sent by the server.
+     *
+     * @param inflater the inflater of the client.
+     * @param payload  the compressed payload.
+     * @return the decompressed message.
+     * @throws Exception if the payload is not valid deflate data.
+     */
+    private static byte[] inflate(final Inflater inflater, final ByteBuffer payload) throws Exception {
+        final byte[] compressed = toArray(payload);
+        final byte[] input = Arrays.copyOf(compressed, compressed.length + 4);
+        input[input.length - 2] = (byte) 0xFF;
+        input[input.length - 1] = (byte) 0xFF;
+        inflater.setInput(input);
+        final byte[] buffer = new byte[65536];
+        return Arrays.copyOf(buffer, inflater.inflate(buffer));
+    }
+
+    /**
+     * Copies the remaining bytes of a buffer.
+     *
+     * @param buffer the buffer to copy.
+     * @return the remaining bytes of the buffer.
+     */
+    private static byte[] toArray(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the rate limiting and expiry of {@link IpHistory}.
+ *
+ * @author Tyler Bucher
+ */
+public class IpHistoryTest {
+
+    @Test
+    public void limitsEachAddressSeparately() throws Exception {
+        final IpHistory history = new IpHistory(new RateLimit(0.001, 2), 60000);
+        final InetAddress first = InetAddress.getByName("10.0.0.1");
+        assertTrue(history.tryAcquireMessage(first));
+        assertTrue(history.tryAcquireMessage(first));
+        assertFalse(history.tryAcquireMessage(first));
+        assertTrue(history.tryAcquireMessage(InetAddress.getByName("10.0.0.2")));
+        assertEquals(2, history.size());
+    }
+
+    @Test
+    public void keepsNothingWhenDisabled() throws Exception {
+        final IpHistory history = new IpHistory(new RateLimit(0, 0), 0);
+        assertTrue(history.tryAcquireMessage(InetAddress.getByName("10.0.0.1")));
+        assertEquals(0, history.size());
+    }
+
+    @Test
+    public void expiresIdleAddressesWithFullBuckets() throws Exception {
+        final IpHistory history = new IpHistory(new RateLimit(1000, 1), 0);
+        assertTrue(history.tryAcquireMessage(InetAddress.getByName("10.0.0.1")));
+        // Wait until the address is older than the lifetime and its bucket refilled
+        Thread.sleep(20);
+        history.expire();
+        assertEquals(0, history.size());
+    }
+
+    @Test
+    public void keepsAddressesSeenWithinTheLifetime() throws Exception {
+        final IpHistory history = new IpHistory(new RateLimit(1000, 1), 60000);
+        assertTrue(history.tryAcquireMessage(InetAddress.getByName("10.0.0.1")));
+        Thread.sleep(20);
+        history.expire();
+        assertEquals(1, history.size());
+    }
+
+    @Test
+    public void keepsAddressesUntilTheirBucketRefilled() throws Exception {
+        final IpHistory history = new IpHistory(new RateLimit(0.001, 1), 0);
+        final InetAddress address = InetAddress.getByName("10.0.0.1");
+        assertTrue(history.tryAcquireMessage(address));
+        Thread.sleep(20);
+        history.expire();
+        assertEquals(1, history.size());
+        // The limit was not reset by expire
+        assertFalse(history.tryAcquireMessage(address));
+    }
+}
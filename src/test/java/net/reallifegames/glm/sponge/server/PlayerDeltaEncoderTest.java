@@ -0,0 +1,160 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.reallifegames.glm.sponge.PlayerPosition;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the keyframes and deltas written by {@link PlayerDeltaEncoder}.
+ *
+ * @author Tyler Bucher
+ */
+public class PlayerDeltaEncoderTest {
+
+    /**
+     * Reads the messages written by the encoder.
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void startsWithAKeyframe() throws Exception {
+        final PlayerDeltaEncoder encoder = new PlayerDeltaEncoder();
+        final JsonNode data = update(encoder, "world", 8, 100, player("a", 1.0, 64.0, -2.5), player("b", 0, 0, 0));
+        assertTrue(data.path("keyframe").asBoolean());
+        assertEquals("world", data.path("worldId").asText());
+        assertEquals(2, data.path("joins").size());
+        final JsonNode join = data.path("joins").get(0);
+        assertEquals(0, join.path("i").asInt());
+        assertEquals("a", join.path("id").asText());
+        assertEquals(8, join.path("x").asInt());
+        assertEquals(512, join.path("y").asInt());
+        assertEquals(-20, join.path("z").asInt());
+    }
+
+    @Test
+    public void sendsNothingWhenNobodyMovedFarEnough() throws Exception {
+        final PlayerDeltaEncoder encoder = new PlayerDeltaEncoder();
+        update(encoder, "world", 8, 100, player("a", 0, 0, 0));
+        assertNull(encoder.update("world", Collections.singletonList(player("a", 0.5, 0, 0)), 8, 100));
+        final JsonNode data = update(encoder, "world", 8, 100, player("a", 1.5, 0, 0));
+        assertFalse(data.path("keyframe").asBoolean());
+        assertEquals(Arrays.asList(0, 12, 0, 0), toList(data.path("moves")));
+    }
+
+    @Test
+    public void neverReusesAnIndexInTheMessageItWasFreed() throws Exception {
+        final PlayerDeltaEncoder encoder = new PlayerDeltaEncoder();
+        update(encoder, "world", 8, 100, player("a", 0, 0, 0), player("b", 0, 0, 0));
+        // a leaves while c joins
+        JsonNode data = update(encoder, "world", 8, 100, player("b", 0, 0, 0), player("c", 0, 0, 0));
+        assertEquals(Collections.singletonList(0), toList(data.path("leaves")));
+        assertEquals(2, data.path("joins").get(0).path("i").asInt());
+        // The freed index is given to the next player who joins
+        data = update(encoder, "world", 8, 100, player("b", 0, 0, 0), player("c", 0, 0, 0), player("d", 0, 0, 0));
+        assertEquals(0, data.path("joins").get(0).path("i").asInt());
+    }
+
+    @Test
+    public void writesLeavesBeforeJoins() throws Exception {
+        final PlayerDeltaEncoder encoder = new PlayerDeltaEncoder();
+        update(encoder, "world", 8, 100, player("a", 0, 0, 0));
+        final JsonNode data = update(encoder, "world", 8, 100, player("b", 0, 0, 0));
+        final List<String> fields = new ArrayList<>();
+        data.fieldNames().forEachRemaining(fields::add);
+        assertTrue(fields.indexOf("leaves") < fields.indexOf("joins"));
+        assertTrue(fields.indexOf("joins") < fields.indexOf("moves"));
+    }
+
+    @Test
+    public void sendsAKeyframeAfterTheInterval() throws Exception {
+        final PlayerDeltaEncoder encoder = new PlayerDeltaEncoder();
+        update(encoder, "world", 8, 2, player("a", 0, 0, 0));
+        assertFalse(update(encoder, "world", 8, 2, player("a", 5, 0, 0)).path("keyframe").asBoolean());
+        final JsonNode data = update(encoder, "world", 8, 2, player("a", 5, 0, 0));
+        assertTrue(data.path("keyframe").asBoolean());
+        assertEquals(1, data.path("joins").size());
+        // Changing worlds starts over too
+        assertTrue(update(encoder, "nether", 8, 2, player("a", 5, 0, 0)).path("keyframe").asBoolean());
+    }
+
+    /**
+     * Runs the encoder and reads the data of the message.
+     *
+     * @param encoder          the encoder to run.
+     * @param worldId          the world of the players.
+     * @param moveThreshold    the distance in position units a player has to move before the move is sent.
+     * @param keyframeInterval the number of messages between keyframes.
+     * @param players          the visible players.
+     * @return the data of the message.
+     * @throws Exception if the message could not be written or read.
+     */
+    private JsonNode update(final PlayerDeltaEncoder encoder, final String worldId, final int moveThreshold,
+                            final int keyframeInterval, final PlayerPosition... players) throws Exception {
+        final byte[] message = encoder.update(worldId, Arrays.asList(players), moveThreshold, keyframeInterval);
+        assertTrue(message != null);
+        return objectMapper.readTree(message).path("data");
+    }
+
+    /**
+     * Creates a player position.
+     *
+     * @param id the id and name of the player.
+     * @param x  the x position of the player.
+     * @param y  the y position of the player.
+     * @param z  the z position of the player.
+     * @return the new player position.
+     */
+    private static PlayerPosition player(final String id, final double x, final double y, final double z) {
+        return new PlayerPosition(id, id, x, y, z);
+    }
+
+    /**
+     * Reads a json array of numbers.
+     *
+     * @param arrayNode the array to read.
+     * @return the numbers of the array.
+     */
+    private static List<Integer> toList(final JsonNode arrayNode) {
+        final List<Integer> values = new ArrayList<>();
+        final Iterator<JsonNode> iterator = arrayNode.elements();
+        while (iterator.hasNext()) {
+            values.add(iterator.next().asInt());
+        }
+        return values;
+    }
+}
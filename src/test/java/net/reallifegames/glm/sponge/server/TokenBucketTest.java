@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the token accounting of {@link TokenBucket}.
+ *
+ * @author Tyler Bucher
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void startsFull() {
+        final TokenBucket bucket = new TokenBucket(1, 5);
+        assertTrue(bucket.isFull());
+        assertEquals(5, bucket.getAvailableTokens());
+        assertEquals(0, bucket.getWaitTime(5));
+    }
+
+    @Test
+    public void allowsTheBurstThenDrops() {
+        final TokenBucket bucket = new TokenBucket(0.001, 3);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        assertFalse(bucket.isFull());
+    }
+
+    @Test
+    public void returnsTheWaitTimeWhenEmpty() {
+        // One token every 1000 seconds so the bucket can not refill during the test
+        final TokenBucket bucket = new TokenBucket(0.001, 1);
+        assertEquals(0, bucket.tryAcquire(1));
+        final long wait = bucket.tryAcquire(1);
+        assertTrue(wait > 999_000_000_000L && wait <= 1_000_000_000_000L);
+        assertTrue(Math.abs(bucket.getWaitTime(1) - wait) < 1_000_000_000L);
+    }
+
+    @Test
+    public void takesNothingWhenShort() {
+        final TokenBucket bucket = new TokenBucket(0.001, 3);
+        assertTrue(bucket.tryAcquire(2) == 0);
+        assertTrue(bucket.tryAcquire(2) > 0);
+        assertEquals(1, bucket.getAvailableTokens());
+    }
+
+    @Test
+    public void neverHoldsMoreThanTheBurst() {
+        final TokenBucket bucket = new TokenBucket(1, 2);
+        assertEquals(Long.MAX_VALUE, bucket.tryAcquire(3));
+        assertEquals(2, bucket.getAvailableTokens());
+    }
+
+    @Test
+    public void takesUpToTheAvailableTokens() {
+        final TokenBucket bucket = new TokenBucket(0.001, 4);
+        assertEquals(4, bucket.tryAcquireUpTo(10));
+        assertEquals(0, bucket.tryAcquireUpTo(10));
+        assertEquals(0, bucket.getAvailableTokens());
+    }
+
+    @Test
+    public void takesWholeUnitsOnly() {
+        final TokenBucket bucket = new TokenBucket(0.001, 31);
+        assertEquals(0, bucket.tryAcquireUpTo(1, 32));
+        assertEquals(3, bucket.tryAcquireUpTo(10, 8));
+        assertEquals(7, bucket.getAvailableTokens());
+    }
+
+    @Test
+    public void refillsOverTime() throws InterruptedException {
+        final TokenBucket bucket = new TokenBucket(1000, 1);
+        assertTrue(bucket.tryAcquire());
+        Thread.sleep(20);
+        assertTrue(bucket.tryAcquire());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2018 Tyler Bucher
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package net.reallifegames.glm.sponge.server;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the bounds and clamping of {@link Viewport}.
+ *
+ * @author Tyler Bucher
+ */
+public class ViewportTest {
+
+    /**
+     * The world used in the tests.
+     */
+    private static final String WORLD_ID = "01234567-89ab-cdef-0123-456789abcdef";
+
+    @Test
+    public void swapsMinimumAndMaximum() {
+        final Viewport viewport = new Viewport(WORLD_ID, 5, 8, -3, 2, 1.0d);
+        assertEquals(-3, viewport.getMinX());
+        assertEquals(2, viewport.getMinZ());
+        assertEquals(5, viewport.getMaxX());
+        assertEquals(8, viewport.getMaxZ());
+        assertEquals(9 * 7, viewport.getArea());
+        assertTrue(viewport.contains(WORLD_ID, -3, 8));
+        assertFalse(viewport.contains(WORLD_ID, 6, 8));
+        assertFalse(viewport.contains("other", 0, 4));
+    }
+
+    @Test
+    public void keepsSmallViewports() {
+        final Viewport viewport = new Viewport(WORLD_ID, 0, 0, 9, 9, 1.0d);
+        assertSame(viewport, viewport.clamp(100));
+        final Viewport single = new Viewport(WORLD_ID, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                Integer.MAX_VALUE, 1.0d);
+        assertSame(single, single.clamp(1));
+    }
+
+    @Test
+    public void shrinksLargeViewportsAroundTheirCenter() {
+        final Viewport viewport = new Viewport(WORLD_ID, -100, -100, 100, 100, 2.0d).clamp(81);
+        assertEquals(-4, viewport.getMinX());
+        assertEquals(-4, viewport.getMinZ());
+        assertEquals(4, viewport.getMaxX());
+        assertEquals(4, viewport.getMaxZ());
+        assertEquals(81, viewport.getArea());
+        assertEquals(2.0d, viewport.getZoom(), 0.0d);
+    }
+
+    @Test
+    public void staysInsideOfNarrowViewports() {
+        final Viewport viewport = new Viewport(WORLD_ID, 0, 0, 1000, 2, 1.0d).clamp(100);
+        assertEquals(0, viewport.getMinZ());
+        assertEquals(2, viewport.getMaxZ());
+        assertTrue(viewport.getArea() <= 100);
+    }
+
+    @Test
+    public void clampsExtremeViewportsWithoutOverflow() {
+        final Viewport viewport = new Viewport(WORLD_ID, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                Integer.MAX_VALUE, 1.0d).clamp(4096);
+        assertTrue(viewport.getMinX() <= viewport.getMaxX());
+        assertTrue(viewport.getArea() <= 4096);
+        final Viewport edge = new Viewport(WORLD_ID, Integer.MAX_VALUE - 1000, 0, Integer.MAX_VALUE, 1000, 1.0d).clamp(100);
+        assertTrue(edge.getMinX() >= Integer.MAX_VALUE - 1000);
+        assertTrue(edge.getMinX() <= edge.getMaxX());
+        assertTrue(edge.getArea() <= 100);
+    }
+
+    @Test
+    public void rejectsPositionsOutsideOfTheWorld() {
+        assertTrue(Viewport.isValidPosition(0));
+        assertTrue(Viewport.isValidPosition(Viewport.MAX_CHUNK_POSITION));
+        assertTrue(Viewport.isValidPosition(-Viewport.MAX_CHUNK_POSITION));
+        assertFalse(Viewport.isValidPosition(Viewport.MAX_CHUNK_POSITION + 1L));
+        assertFalse(Viewport.isValidPosition(Integer.MAX_VALUE));
+        assertFalse(Viewport.isValidPosition(Long.MIN_VALUE));
+    }
+}